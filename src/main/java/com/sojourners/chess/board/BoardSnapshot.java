@@ -0,0 +1,52 @@
+package com.sojourners.chess.board;
+
+/**
+ * 棋盘局面的只读快照
+ * <p>
+ * 创建时复制棋盘，之后不再变化，可交给引擎线程等任意线程读取。
+ */
+public final class BoardSnapshot {
+
+    private final char[][] board;
+
+    private final long zobrist;
+
+    private final boolean redGo;
+
+    /**
+     * @param board   当前棋盘(会被复制)
+     * @param zobrist 当前局面(含走子方)的 zobrist 值
+     * @param redGo   是否红方走棋
+     */
+    public BoardSnapshot(char[][] board, long zobrist, boolean redGo) {
+        this.board = new char[board.length][];
+        for (int i = 0; i < board.length; i++) {
+            this.board[i] = board[i].clone();
+        }
+        this.zobrist = zobrist;
+        this.redGo = redGo;
+    }
+
+    public char pieceAt(int row, int col) {
+        return board[row][col];
+    }
+
+    /**
+     * 复制一份可修改的棋盘
+     */
+    public char[][] copyBoard() {
+        char[][] copy = new char[board.length][];
+        for (int i = 0; i < board.length; i++) {
+            copy[i] = board[i].clone();
+        }
+        return copy;
+    }
+
+    public long getZobrist() {
+        return zobrist;
+    }
+
+    public boolean isRedGo() {
+        return redGo;
+    }
+}
@@ -19,7 +19,10 @@ public class ChessBoard {
 
     private static volatile char[][] board = new char[10][9];
 
-    private static char[][] copyBoard = new char[10][9];
+    /**
+     * 与 board 同步的紧凑局面，用于走法校验和将军检测
+     */
+    private static Position position = new Position();
 
     private BoardSize boardSize;
 
@@ -199,6 +202,7 @@ public class ChessBoard {
     private void setNewBoard(String fenCode) {
         if (StringUtils.isEmpty(fenCode)) {
             initChessBoard(board);
+            position.load(board);
         } else {
             setBoard(fenCode);
         }
@@ -230,7 +234,7 @@ public class ChessBoard {
                 remark = new Point(i, j);
                 paint();
                 return null;
-            } else if (!XiangqiUtils.canGo(board, remark.y, remark.x, j, i)) {
+            } else if (!position.canGo(Position.square(remark.y, remark.x), Position.square(j, i))) {
                 return null;
             } else {
                 return move(remark.x, remark.y, i, j);
@@ -272,6 +276,7 @@ public class ChessBoard {
                     }
                 }
             }
+            position.load(board);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -334,6 +339,7 @@ public class ChessBoard {
                 Step s = stepForBoard(moveList.get(i));
                 board[s.second.y][s.second.x] = board[s.first.y][s.first.x];
                 board[s.first.y][s.first.x] = ' ';
+                position.makeMove(Position.square(s.first.y, s.first.x), Position.square(s.second.y, s.second.x));
             }
             Step s = stepForBoard(moveList.get(p - 1));
             move(s.first.x, s.first.y, s.second.x, s.second.y);
@@ -375,22 +381,23 @@ public class ChessBoard {
     public String move(int x1, int y1, int x2, int y2) {
         char tmp = board[y2][x2];
         boolean isRed = XiangqiUtils.isRed(board[y1][x1]);
-        board[y2][x2] = board[y1][x1];
-        board[y1][x1] = ' ';
-        if (XiangqiUtils.isJiang(board, isRed)) {
+        int from = Position.square(y1, x1), to = Position.square(y2, x2);
+        int captured = position.makeMove(from, to);
+        if (XiangqiUtils.isJiang(position, isRed)) {
             // 不可送将
             if (stepSound) {
                 sound.check();
             }
-            board[y1][x1] = board[y2][x2];
-            board[y2][x2] = tmp;
+            position.unmakeMove(from, to, captured);
             return null;
         }
+        board[y2][x2] = board[y1][x1];
+        board[y1][x1] = ' ';
         if (stepSound) {
-            if (XiangqiUtils.isSha(board, !isRed)) {
+            if (XiangqiUtils.isSha(position, !isRed)) {
                 // 绝杀
                 sound.over();
-            } else if (XiangqiUtils.isJiang(board, !isRed)) {
+            } else if (XiangqiUtils.isJiang(position, !isRed)) {
                 // 将军
                 sound.check();
             } else {
@@ -478,27 +485,7 @@ public class ChessBoard {
      */
     public String translate(String move, boolean hasGo) {
         StringBuilder sb = new StringBuilder();
-        translateStep(this.board, sb, move, hasGo);
-        return sb.toString();
-    }
-
-    /**
-     * 翻译引擎着法(思考细节)
-     *
-     * @param moveList
-     * @return
-     */
-    public String translate(List<String> moveList) {
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                copyBoard[i][j] = board[i][j];
-            }
-        }
-        StringBuilder sb = new StringBuilder();
-        for (String move : moveList) {
-            translateStep(copyBoard, sb, move, false);
-        }
-        sb.delete(sb.length() - 2, sb.length());
+        PvTranslator.translateStep(this.board, sb, move, hasGo);
         return sb.toString();
     }
 
@@ -506,50 +493,8 @@ public class ChessBoard {
         return this.board;
     }
 
-    private void translateStep(char[][] board, StringBuilder sb, String move, boolean hasGo) {
-        if (StringUtils.isEmpty(move) || move.length() < 4) {
-            sb.append(move);
-            return;
-        }
-        char a = move.charAt(0), b = move.charAt(1), c = move.charAt(2), d = move.charAt(3);
-        int fromI = 9 - Integer.parseInt(String.valueOf(b)), toI = 9 - Integer.parseInt(String.valueOf(d));
-        int fromJ = a - 'a', toJ = c - 'a';
-        sb.append(map.get(hasGo ? board[toI][toJ] : board[fromI][fromJ]));
-        boolean isRed = XiangqiUtils.isRed(hasGo ? board[toI][toJ] : board[fromI][fromJ]);
-        char pos = getPos(fromJ, isRed);
-        sb.append(isRed ? map.get(pos) : pos);
-        if (fromI == toI && fromJ != toJ) {
-            sb.append("平");
-            pos = getPos(toJ, isRed);
-            sb.append(isRed ? map.get(pos) : pos);
-        } else if (fromI != toI && fromJ == toJ) {
-            if (isRed) {
-                sb.append(fromI > toI ? "进" : "退");
-            } else {
-                sb.append(fromI < toI ? "进" : "退");
-            }
-            pos = (char) ('０' + (Math.abs(fromI - toI)));
-            sb.append(isRed ? map.get(pos) : pos);
-        } else {
-            if (isRed) {
-                sb.append(fromI > toI ? "进" : "退");
-            } else {
-                sb.append(fromI < toI ? "进" : "退");
-            }
-            pos = getPos(toJ, isRed);
-            sb.append(isRed ? map.get(pos) : pos);
-        }
-        sb.append("  ");
-        copyBoard[toI][toJ] = copyBoard[fromI][fromJ];
-        copyBoard[fromI][fromJ] = ' ';
-    }
-
-    private char getPos(int j, boolean isRed) {
-        if (isRed) {
-            return (char) ('０' + 9 - j);
-        } else {
-            return (char) ('０' + j + 1);
-        }
+    public Position getPosition() {
+        return position;
     }
 
     public void autoFitSize(double width, double height, double position, boolean showStatusBar) {
@@ -0,0 +1,275 @@
+package com.sojourners.chess.board;
+
+/**
+ * 着法生成
+ * <p>
+ * 着法编码为 int：from << 7 | to，from/to 为 {@link Position} 的格子下标。
+ * 生成结果写入调用方提供的 int[] 缓冲区，返回写入后的下标，全程不分配内存。
+ * 伪合法着法只考虑棋子走法；合法着法再排除走后被将(包括将帅对脸)的着法。
+ */
+public class MoveGenerator {
+
+    /**
+     * 单方伪合法着法数的上限
+     */
+    public static final int MAX_MOVES = 128;
+
+    private static final int[][] KNIGHT_DELTAS = {
+            {-2, -1}, {-2, 1}, {2, -1}, {2, 1},
+            {-1, -2}, {1, -2}, {-1, 2}, {1, 2}
+    };
+
+    private static final int[][] ORTHOGONAL = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    private static final int[][] DIAGONAL = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+
+    /**
+     * 着法过滤钩子，用于在合法着法基础上附加规则(例如长将、长捉的禁着判断)
+     */
+    public interface MoveFilter {
+
+        /**
+         * @param position 已走完该着法的局面
+         * @param move     着法
+         * @return 是否保留该着法
+         */
+        boolean accept(Position position, int move);
+    }
+
+    public static int move(int from, int to) {
+        return from << 7 | to;
+    }
+
+    public static int from(int move) {
+        return move >>> 7;
+    }
+
+    public static int to(int move) {
+        return move & 127;
+    }
+
+    /**
+     * 引擎坐标(如 h2e2)
+     */
+    public static String toUci(int move) {
+        int from = from(move), to = to(move);
+        return new StringBuilder(4)
+                .append((char) ('a' + Position.col(from))).append(9 - Position.row(from))
+                .append((char) ('a' + Position.col(to))).append(9 - Position.row(to))
+                .toString();
+    }
+
+    /**
+     * 解析引擎坐标，格式错误返回 -1
+     */
+    public static int fromUci(String move) {
+        if (move == null || move.length() < 4) {
+            return -1;
+        }
+        int c1 = move.charAt(0) - 'a', r1 = 9 - (move.charAt(1) - '0');
+        int c2 = move.charAt(2) - 'a', r2 = 9 - (move.charAt(3) - '0');
+        if (c1 < 0 || c1 > 8 || c2 < 0 || c2 > 8 || r1 < 0 || r1 > 9 || r2 < 0 || r2 > 9) {
+            return -1;
+        }
+        return move(Position.square(r1, c1), Position.square(r2, c2));
+    }
+
+    /**
+     * 生成一方全部伪合法着法
+     */
+    public static int generatePseudoLegal(Position position, boolean red, int[] moves, int offset) {
+        int side = red ? Position.RED : Position.BLACK;
+        long bits = position.occupancyLow(side);
+        while (bits != 0) {
+            offset = generate(position, Long.numberOfTrailingZeros(bits), moves, offset);
+            bits &= bits - 1;
+        }
+        bits = position.occupancyHigh(side);
+        while (bits != 0) {
+            offset = generate(position, 64 + Long.numberOfTrailingZeros(bits), moves, offset);
+            bits &= bits - 1;
+        }
+        return offset;
+    }
+
+    /**
+     * 生成一方全部合法着法
+     */
+    public static int generateLegal(Position position, boolean red, int[] moves, int offset) {
+        return generateLegal(position, red, moves, offset, null);
+    }
+
+    /**
+     * 生成一方全部合法着法，并用 filter 做额外筛选
+     */
+    public static int generateLegal(Position position, boolean red, int[] moves, int offset, MoveFilter filter) {
+        int end = generatePseudoLegal(position, red, moves, offset);
+        int n = offset;
+        for (int i = offset; i < end; i++) {
+            int m = moves[i];
+            int from = from(m), to = to(m);
+            int captured = position.makeMove(from, to);
+            boolean ok = !position.isChecked(red) && (filter == null || filter.accept(position, m));
+            position.unmakeMove(from, to, captured);
+            if (ok) {
+                moves[n++] = m;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 着法是否合法，格式错误(-1)的返回 false
+     */
+    public static boolean isLegal(Position position, boolean red, int move) {
+        if (move < 0) {
+            return false;
+        }
+        int[] moves = new int[MAX_MOVES];
+        int n = generateLegal(position, red, moves, 0);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 着法是否将军(用于长将判断)
+     */
+    public static boolean givesCheck(Position position, int move) {
+        int from = from(move), to = to(move);
+        boolean red = Position.isRed(position.pieceAt(from));
+        int captured = position.makeMove(from, to);
+        boolean check = position.isChecked(!red);
+        position.unmakeMove(from, to, captured);
+        return check;
+    }
+
+    /**
+     * 生成某格棋子的伪合法着法
+     */
+    public static int generate(Position position, int from, int[] moves, int offset) {
+        byte p = position.pieceAt(from);
+        if (p == Position.EMPTY) {
+            return offset;
+        }
+        int side = Position.side(p);
+        boolean red = side == Position.RED;
+        int r = Position.row(from), c = Position.col(from);
+        switch (Position.type(p)) {
+            case Position.KING: {
+                for (int[] d : ORTHOGONAL) {
+                    int nr = r + d[0], nc = c + d[1];
+                    if (inPalace(nr, nc, red)) {
+                        offset = add(position, side, from, nr, nc, moves, offset);
+                    }
+                }
+                return offset;
+            }
+            case Position.ADVISOR: {
+                for (int[] d : DIAGONAL) {
+                    int nr = r + d[0], nc = c + d[1];
+                    if (inPalace(nr, nc, red)) {
+                        offset = add(position, side, from, nr, nc, moves, offset);
+                    }
+                }
+                return offset;
+            }
+            case Position.BISHOP: {
+                for (int[] d : DIAGONAL) {
+                    int nr = r + 2 * d[0], nc = c + 2 * d[1];
+                    if (nr < 0 || nr > 9 || nc < 0 || nc > 8 || (red ? nr < 5 : nr > 4)) {
+                        continue;
+                    }
+                    if (position.pieceAt(r + d[0], c + d[1]) == Position.EMPTY) {
+                        offset = add(position, side, from, nr, nc, moves, offset);
+                    }
+                }
+                return offset;
+            }
+            case Position.KNIGHT: {
+                for (int[] d : KNIGHT_DELTAS) {
+                    int nr = r + d[0], nc = c + d[1];
+                    if (nr < 0 || nr > 9 || nc < 0 || nc > 8) {
+                        continue;
+                    }
+                    int legR = Math.abs(d[0]) == 2 ? r + d[0] / 2 : r;
+                    int legC = Math.abs(d[1]) == 2 ? c + d[1] / 2 : c;
+                    if (position.pieceAt(legR, legC) == Position.EMPTY) {
+                        offset = add(position, side, from, nr, nc, moves, offset);
+                    }
+                }
+                return offset;
+            }
+            case Position.ROOK: {
+                for (int[] d : ORTHOGONAL) {
+                    for (int nr = r + d[0], nc = c + d[1]; nr >= 0 && nr <= 9 && nc >= 0 && nc <= 8; nr += d[0], nc += d[1]) {
+                        byte t = position.pieceAt(nr, nc);
+                        if (t == Position.EMPTY) {
+                            moves[offset++] = move(from, Position.square(nr, nc));
+                        } else {
+                            if (Position.side(t) != side) {
+                                moves[offset++] = move(from, Position.square(nr, nc));
+                            }
+                            break;
+                        }
+                    }
+                }
+                return offset;
+            }
+            case Position.CANNON: {
+                for (int[] d : ORTHOGONAL) {
+                    boolean screen = false;
+                    for (int nr = r + d[0], nc = c + d[1]; nr >= 0 && nr <= 9 && nc >= 0 && nc <= 8; nr += d[0], nc += d[1]) {
+                        byte t = position.pieceAt(nr, nc);
+                        if (!screen) {
+                            if (t == Position.EMPTY) {
+                                moves[offset++] = move(from, Position.square(nr, nc));
+                            } else {
+                                screen = true;
+                            }
+                        } else if (t != Position.EMPTY) {
+                            if (Position.side(t) != side) {
+                                moves[offset++] = move(from, Position.square(nr, nc));
+                            }
+                            break;
+                        }
+                    }
+                }
+                return offset;
+            }
+            case Position.PAWN: {
+                int nr = red ? r - 1 : r + 1;
+                if (nr >= 0 && nr <= 9) {
+                    offset = add(position, side, from, nr, c, moves, offset);
+                }
+                if (red ? r < 5 : r >= 5) {
+                    if (c > 0) {
+                        offset = add(position, side, from, r, c - 1, moves, offset);
+                    }
+                    if (c < 8) {
+                        offset = add(position, side, from, r, c + 1, moves, offset);
+                    }
+                }
+                return offset;
+            }
+            default:
+                return offset;
+        }
+    }
+
+    private static int add(Position position, int side, int from, int r, int c, int[] moves, int offset) {
+        int to = Position.square(r, c);
+        byte t = position.pieceAt(to);
+        if (t == Position.EMPTY || Position.side(t) != side) {
+            moves[offset++] = move(from, to);
+        }
+        return offset;
+    }
+
+    private static boolean inPalace(int r, int c, boolean red) {
+        return c >= 3 && c <= 5 && (red ? r >= 7 && r <= 9 : r >= 0 && r <= 2);
+    }
+}
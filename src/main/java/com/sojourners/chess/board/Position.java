@@ -0,0 +1,554 @@
+package com.sojourners.chess.board;
+
+import com.sojourners.chess.util.ZobristUtils;
+
+/**
+ * 紧凑局面表示
+ * <p>
+ * 90格字节棋盘(sq = row * 9 + col，第0行为黑方底线)，附带按行/列的占用位图、
+ * 双方128位占用掩码以及增量维护的将帅位置和 Zobrist 键值(正常/左右镜像)。走子/撤销均不分配内存，
+ * 将军检测只沿将帅出发的射线和马腿查找攻击者，而不是扫描整个棋盘。
+ * <p>
+ * 规则方向与 {@link ChessBoard} 一致：红方在下(第7-9行为红方九宫)。
+ */
+public class Position {
+
+    public static final int RED = 0;
+    public static final int BLACK = 1;
+
+    public static final byte EMPTY = 0;
+
+    public static final int KING = 1;
+    public static final int ADVISOR = 2;
+    public static final int BISHOP = 3;
+    public static final int KNIGHT = 4;
+    public static final int ROOK = 5;
+    public static final int CANNON = 6;
+    public static final int PAWN = 7;
+
+    /**
+     * 棋子编码：红方 1-7，黑方 9-15，低三位为兵种
+     */
+    private static final int BLACK_FLAG = 8;
+
+    private static final String PIECE_CHARS = " KABNRCP kabnrcp";
+
+    private static final byte[] CHAR_TO_PIECE = new byte[128];
+
+    static {
+        for (int i = 0; i < PIECE_CHARS.length(); i++) {
+            char c = PIECE_CHARS.charAt(i);
+            if (c != ' ') {
+                CHAR_TO_PIECE[c] = (byte) i;
+            }
+        }
+    }
+
+    /**
+     * 马的八个落点偏移 {dRow, dCol}
+     */
+    private static final int[][] KNIGHT_DELTAS = {
+            {-2, -1}, {-2, 1}, {2, -1}, {2, 1},
+            {-1, -2}, {1, -2}, {-1, 2}, {1, 2}
+    };
+
+    private final byte[] squares = new byte[90];
+
+    /**
+     * 每一行的占用位图，第 col 位表示该列有子
+     */
+    private final int[] rowBits = new int[10];
+
+    /**
+     * 每一列的占用位图，第 row 位表示该行有子
+     */
+    private final int[] colBits = new int[9];
+
+    /**
+     * 双方占用掩码，low 为 0-63 格，high 为 64-89 格
+     */
+    private final long[] occLow = new long[2];
+    private final long[] occHigh = new long[2];
+
+    private final int[] kings = {-1, -1};
+
+    /**
+     * 只含棋子的 Zobrist 键值(不含行棋方)，mirrorZobrist 为左右镜像局面的键值
+     */
+    private long zobrist;
+    private long mirrorZobrist;
+
+    /**
+     * 单个棋子着法的临时缓冲区
+     */
+    private final int[] pieceMoves = new int[MoveGenerator.MAX_MOVES];
+
+    public Position() {
+
+    }
+
+    public Position(char[][] board) {
+        load(board);
+    }
+
+    public static int square(int row, int col) {
+        return row * 9 + col;
+    }
+
+    public static int row(int sq) {
+        return sq / 9;
+    }
+
+    public static int col(int sq) {
+        return sq % 9;
+    }
+
+    public static byte toPiece(char c) {
+        return c < 128 ? CHAR_TO_PIECE[c] : EMPTY;
+    }
+
+    public static char toChar(int piece) {
+        return PIECE_CHARS.charAt(piece);
+    }
+
+    public static int type(int piece) {
+        return piece & 7;
+    }
+
+    public static int side(int piece) {
+        return piece >> 3;
+    }
+
+    public static boolean isRed(int piece) {
+        return piece != EMPTY && piece < BLACK_FLAG;
+    }
+
+    /**
+     * 兵种+阵营组合出棋子编码
+     */
+    public static byte piece(int side, int type) {
+        return (byte) (side == RED ? type : type | BLACK_FLAG);
+    }
+
+    public void clear() {
+        for (int i = 0; i < 90; i++) {
+            squares[i] = EMPTY;
+        }
+        for (int i = 0; i < 10; i++) {
+            rowBits[i] = 0;
+        }
+        for (int i = 0; i < 9; i++) {
+            colBits[i] = 0;
+        }
+        occLow[0] = occLow[1] = 0;
+        occHigh[0] = occHigh[1] = 0;
+        kings[0] = kings[1] = -1;
+        zobrist = mirrorZobrist = 0;
+    }
+
+    /**
+     * 从字符棋盘载入局面
+     */
+    public void load(char[][] board) {
+        clear();
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 9; j++) {
+                byte p = toPiece(board[i][j]);
+                if (p != EMPTY) {
+                    put(square(i, j), p);
+                }
+            }
+        }
+    }
+
+    /**
+     * 从FEN载入局面(只解析棋盘部分，不处理翻转)
+     */
+    public void loadFen(String fenCode) {
+        clear();
+        String[] rows = fenCode.split(" ")[0].split("/");
+        for (int i = 0; i < rows.length && i < 10; i++) {
+            int j = 0;
+            for (char c : rows[i].toCharArray()) {
+                if (c >= '1' && c <= '9') {
+                    j += c - '0';
+                } else if (j < 9) {
+                    byte p = toPiece(c);
+                    if (p != EMPTY) {
+                        put(square(i, j), p);
+                    }
+                    j++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 复制另一个局面
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.squares, 0, squares, 0, 90);
+        System.arraycopy(other.rowBits, 0, rowBits, 0, 10);
+        System.arraycopy(other.colBits, 0, colBits, 0, 9);
+        occLow[0] = other.occLow[0];
+        occLow[1] = other.occLow[1];
+        occHigh[0] = other.occHigh[0];
+        occHigh[1] = other.occHigh[1];
+        kings[0] = other.kings[0];
+        kings[1] = other.kings[1];
+        zobrist = other.zobrist;
+        mirrorZobrist = other.mirrorZobrist;
+    }
+
+    /**
+     * 写回字符棋盘
+     */
+    public void copyTo(char[][] board) {
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 9; j++) {
+                board[i][j] = toChar(squares[square(i, j)]);
+            }
+        }
+    }
+
+    public byte pieceAt(int sq) {
+        return squares[sq];
+    }
+
+    public byte pieceAt(int row, int col) {
+        return squares[square(row, col)];
+    }
+
+    public int kingSquare(boolean red) {
+        return kings[red ? RED : BLACK];
+    }
+
+    /**
+     * 局面键值，可直接用于开局库查询
+     */
+    public long getZobrist(boolean redGo) {
+        return ZobristUtils.withPlayer(zobrist, redGo);
+    }
+
+    /**
+     * 左右镜像局面的键值
+     */
+    public long getMirrorZobrist(boolean redGo) {
+        return ZobristUtils.withPlayer(mirrorZobrist, redGo);
+    }
+
+    public long occupancyLow(int side) {
+        return occLow[side];
+    }
+
+    public long occupancyHigh(int side) {
+        return occHigh[side];
+    }
+
+    public void put(int sq, byte piece) {
+        if (squares[sq] != EMPTY) {
+            remove(sq);
+        }
+        if (piece == EMPTY) {
+            return;
+        }
+        squares[sq] = piece;
+        int r = row(sq), c = col(sq), s = side(piece);
+        rowBits[r] |= 1 << c;
+        colBits[c] |= 1 << r;
+        if (sq < 64) {
+            occLow[s] |= 1L << sq;
+        } else {
+            occHigh[s] |= 1L << (sq - 64);
+        }
+        if (type(piece) == KING) {
+            kings[s] = sq;
+        }
+        int chess = zobristIndex(piece);
+        zobrist ^= ZobristUtils.getPieceKey(chess, sq);
+        mirrorZobrist ^= ZobristUtils.getPieceKey(chess, ZobristUtils.mirrorIndex(sq));
+    }
+
+    public byte remove(int sq) {
+        byte piece = squares[sq];
+        if (piece == EMPTY) {
+            return EMPTY;
+        }
+        squares[sq] = EMPTY;
+        int r = row(sq), c = col(sq), s = side(piece);
+        rowBits[r] &= ~(1 << c);
+        colBits[c] &= ~(1 << r);
+        if (sq < 64) {
+            occLow[s] &= ~(1L << sq);
+        } else {
+            occHigh[s] &= ~(1L << (sq - 64));
+        }
+        if (type(piece) == KING && kings[s] == sq) {
+            kings[s] = -1;
+        }
+        int chess = zobristIndex(piece);
+        zobrist ^= ZobristUtils.getPieceKey(chess, sq);
+        mirrorZobrist ^= ZobristUtils.getPieceKey(chess, ZobristUtils.mirrorIndex(sq));
+        return piece;
+    }
+
+    /**
+     * 棋子在 ZobristUtils 中的序号(K A B N R C P k a b n r c p)
+     */
+    private static int zobristIndex(int piece) {
+        return type(piece) - 1 + side(piece) * 7;
+    }
+
+    /**
+     * 走子(不做合法性校验)
+     *
+     * @return 被吃掉的棋子，没有吃子返回 EMPTY
+     */
+    public int makeMove(int from, int to) {
+        byte captured = remove(to);
+        put(to, remove(from));
+        return captured;
+    }
+
+    /**
+     * 撤销 makeMove
+     */
+    public void unmakeMove(int from, int to, int captured) {
+        put(from, remove(to));
+        if (captured != EMPTY) {
+            put(to, (byte) captured);
+        }
+    }
+
+    /**
+     * 一方是否被将军(含将帅对脸)
+     */
+    public boolean isChecked(boolean red) {
+        int side = red ? RED : BLACK;
+        int k = kings[side];
+        if (k < 0) {
+            return false;
+        }
+        int enemy = side ^ 1;
+        byte rook = piece(enemy, ROOK), cannon = piece(enemy, CANNON);
+        byte knight = piece(enemy, KNIGHT), pawn = piece(enemy, PAWN), king = piece(enemy, KING);
+        int r = row(k), c = col(k);
+
+        // 横向：车、炮
+        int bits = rowBits[r];
+        int first = nextUp(bits, c);
+        if (first < 9) {
+            byte p = squares[square(r, first)];
+            if (p == rook) {
+                return true;
+            }
+            int second = nextUp(bits, first);
+            if (second < 9 && squares[square(r, second)] == cannon) {
+                return true;
+            }
+        }
+        first = nextDown(bits, c);
+        if (first >= 0) {
+            byte p = squares[square(r, first)];
+            if (p == rook) {
+                return true;
+            }
+            int second = nextDown(bits, first);
+            if (second >= 0 && squares[square(r, second)] == cannon) {
+                return true;
+            }
+        }
+        // 纵向：车、炮、对脸
+        bits = colBits[c];
+        first = nextUp(bits, r);
+        if (first < 10) {
+            byte p = squares[square(first, c)];
+            if (p == rook || p == king) {
+                return true;
+            }
+            int second = nextUp(bits, first);
+            if (second < 10 && squares[square(second, c)] == cannon) {
+                return true;
+            }
+        }
+        first = nextDown(bits, r);
+        if (first >= 0) {
+            byte p = squares[square(first, c)];
+            if (p == rook || p == king) {
+                return true;
+            }
+            int second = nextDown(bits, first);
+            if (second >= 0 && squares[square(second, c)] == cannon) {
+                return true;
+            }
+        }
+
+        // 马：马腿在将帅的斜角
+        for (int[] d : KNIGHT_DELTAS) {
+            int nr = r + d[0], nc = c + d[1];
+            if (nr < 0 || nr > 9 || nc < 0 || nc > 8 || squares[square(nr, nc)] != knight) {
+                continue;
+            }
+            int legR = Math.abs(d[0]) == 2 ? r + Integer.signum(d[0]) : r + d[0];
+            int legC = Math.abs(d[1]) == 2 ? c + Integer.signum(d[1]) : c + d[1];
+            if (squares[square(legR, legC)] == EMPTY) {
+                return true;
+            }
+        }
+
+        // 兵卒：正前方，以及过河后的左右
+        int front = red ? r - 1 : r + 1;
+        if (front >= 0 && front <= 9 && squares[square(front, c)] == pawn) {
+            return true;
+        }
+        boolean crossed = red ? r >= 5 : r <= 4;
+        if (crossed) {
+            if (c > 0 && squares[square(r, c - 1)] == pawn || c < 8 && squares[square(r, c + 1)] == pawn) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 着法是否符合棋子走法(不考虑走后是否被将)，规则同 XiangqiUtils.canGo
+     */
+    public boolean canGo(int from, int to) {
+        byte p = squares[from], t = squares[to];
+        if (p == EMPTY || from == to || t != EMPTY && side(t) == side(p)) {
+            return false;
+        }
+        int r1 = row(from), c1 = col(from), r2 = row(to), c2 = col(to);
+        boolean red = side(p) == RED;
+        switch (type(p)) {
+            case ROOK: {
+                return (r1 == r2 || c1 == c2) && between(r1, c1, r2, c2) == 0;
+            }
+            case CANNON: {
+                if (r1 != r2 && c1 != c2) {
+                    return false;
+                }
+                int count = between(r1, c1, r2, c2);
+                return count == 1 && t != EMPTY || count == 0 && t == EMPTY;
+            }
+            case KNIGHT: {
+                int absR = Math.abs(r1 - r2), absC = Math.abs(c1 - c2);
+                if (!(absR == 1 && absC == 2 || absR == 2 && absC == 1)) {
+                    return false;
+                }
+                int leg = absR == 2 ? square((r1 + r2) / 2, c1) : square(r1, (c1 + c2) / 2);
+                return squares[leg] == EMPTY;
+            }
+            case BISHOP: {
+                if (red && r2 < 5 || !red && r2 > 4) {
+                    return false;
+                }
+                if (Math.abs(r1 - r2) != 2 || Math.abs(c1 - c2) != 2) {
+                    return false;
+                }
+                return squares[square((r1 + r2) / 2, (c1 + c2) / 2)] == EMPTY;
+            }
+            case ADVISOR: {
+                return inPalace(r2, c2, red) && Math.abs(r1 - r2) == 1 && Math.abs(c1 - c2) == 1;
+            }
+            case KING: {
+                return inPalace(r2, c2, red) && Math.abs(r1 - r2) + Math.abs(c1 - c2) == 1;
+            }
+            case PAWN: {
+                int forward = red ? -1 : 1;
+                if (c1 == c2 && r2 - r1 == forward) {
+                    return true;
+                }
+                boolean crossed = red ? r1 < 5 : r1 >= 5;
+                return crossed && r1 == r2 && Math.abs(c1 - c2) == 1;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 着法是否合法(符合走法且走后不被将)
+     */
+    public boolean isLegal(int from, int to) {
+        return canGo(from, to) && isSafe(from, to);
+    }
+
+    /**
+     * 是否被绝杀/困毙(无合法着法)
+     */
+    public boolean isMated(boolean red) {
+        int side = red ? RED : BLACK;
+        long bits = occLow[side];
+        while (bits != 0) {
+            int sq = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            if (hasLegalMove(sq)) {
+                return false;
+            }
+        }
+        bits = occHigh[side];
+        while (bits != 0) {
+            int sq = 64 + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            if (hasLegalMove(sq)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasLegalMove(int from) {
+        int n = MoveGenerator.generate(this, from, pieceMoves, 0);
+        for (int i = 0; i < n; i++) {
+            if (isSafe(from, MoveGenerator.to(pieceMoves[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSafe(int from, int to) {
+        boolean red = isRed(squares[from]);
+        int captured = makeMove(from, to);
+        boolean checked = isChecked(red);
+        unmakeMove(from, to, captured);
+        return !checked;
+    }
+
+    private static boolean inPalace(int r, int c, boolean red) {
+        return c >= 3 && c <= 5 && (red ? r >= 7 : r <= 2);
+    }
+
+    /**
+     * 同一行/列两点之间的棋子数
+     */
+    private int between(int r1, int c1, int r2, int c2) {
+        int bits, lo, hi;
+        if (r1 == r2) {
+            bits = rowBits[r1];
+            lo = Math.min(c1, c2);
+            hi = Math.max(c1, c2);
+        } else {
+            bits = colBits[c1];
+            lo = Math.min(r1, r2);
+            hi = Math.max(r1, r2);
+        }
+        int mask = (1 << hi) - (1 << (lo + 1));
+        return Integer.bitCount(bits & mask);
+    }
+
+    /**
+     * 位图中大于 i 的最近一位，没有则返回 32
+     */
+    private static int nextUp(int bits, int i) {
+        return Integer.numberOfTrailingZeros(bits >>> (i + 1) << (i + 1));
+    }
+
+    /**
+     * 位图中小于 i 的最近一位，没有则返回 -1
+     */
+    private static int nextDown(int bits, int i) {
+        return 31 - Integer.numberOfLeadingZeros(bits & ((1 << i) - 1));
+    }
+}
@@ -0,0 +1,133 @@
+package com.sojourners.chess.board;
+
+import com.sojourners.chess.util.StringUtils;
+import com.sojourners.chess.util.XiangqiUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 引擎着法翻译为中文记谱
+ * <p>
+ * 在 {@link BoardSnapshot} 上翻译，每次调用使用自己的临时棋盘，可在任意线程调用。
+ * 每一步的译文按 (局面 zobrist, 着法前缀) 缓存：引擎每行输出的主要变例大多与上一行前缀相同，
+ * 只有新出现的着法需要翻译，其余只需在临时棋盘上走子。
+ */
+public class PvTranslator {
+
+    /**
+     * 缓存条数上限，超过后整体清空
+     */
+    private static final int CACHE_SIZE = 65536;
+
+    private static final Map<Long, String> cache = new ConcurrentHashMap<>();
+
+    private PvTranslator() {
+    }
+
+    /**
+     * 翻译主要变例
+     *
+     * @param snapshot 变例起始局面
+     * @param moveList 引擎着法
+     * @return 以两个空格分隔的中文着法
+     */
+    public static String translate(BoardSnapshot snapshot, List<String> moveList) {
+        char[][] board = snapshot.copyBoard();
+        long key = snapshot.getZobrist();
+        StringBuilder sb = new StringBuilder();
+        for (String move : moveList) {
+            key = prefixKey(key, move);
+            String step = cache.get(key);
+            if (step == null) {
+                StringBuilder stepSb = new StringBuilder(8);
+                translateStep(board, stepSb, move, false);
+                step = stepSb.toString();
+                if (cache.size() >= CACHE_SIZE) {
+                    cache.clear();
+                }
+                cache.put(key, step);
+            }
+            sb.append(step);
+            go(board, move);
+        }
+        if (sb.length() >= 2) {
+            sb.delete(sb.length() - 2, sb.length());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 翻译一步着法，不修改棋盘
+     *
+     * @param hasGo 着法是否已经走过(棋子在目标位置)
+     */
+    public static void translateStep(char[][] board, StringBuilder sb, String move, boolean hasGo) {
+        if (StringUtils.isEmpty(move) || move.length() < 4) {
+            sb.append(move);
+            return;
+        }
+        char a = move.charAt(0), b = move.charAt(1), c = move.charAt(2), d = move.charAt(3);
+        int fromI = 9 - Integer.parseInt(String.valueOf(b)), toI = 9 - Integer.parseInt(String.valueOf(d));
+        int fromJ = a - 'a', toJ = c - 'a';
+        Map<Character, String> map = ChessBoard.map;
+        sb.append(map.get(hasGo ? board[toI][toJ] : board[fromI][fromJ]));
+        boolean isRed = XiangqiUtils.isRed(hasGo ? board[toI][toJ] : board[fromI][fromJ]);
+        char pos = getPos(fromJ, isRed);
+        sb.append(isRed ? map.get(pos) : pos);
+        if (fromI == toI && fromJ != toJ) {
+            sb.append("平");
+            pos = getPos(toJ, isRed);
+            sb.append(isRed ? map.get(pos) : pos);
+        } else if (fromI != toI && fromJ == toJ) {
+            if (isRed) {
+                sb.append(fromI > toI ? "进" : "退");
+            } else {
+                sb.append(fromI < toI ? "进" : "退");
+            }
+            pos = (char) ('０' + (Math.abs(fromI - toI)));
+            sb.append(isRed ? map.get(pos) : pos);
+        } else {
+            if (isRed) {
+                sb.append(fromI > toI ? "进" : "退");
+            } else {
+                sb.append(fromI < toI ? "进" : "退");
+            }
+            pos = getPos(toJ, isRed);
+            sb.append(isRed ? map.get(pos) : pos);
+        }
+        sb.append("  ");
+    }
+
+    /**
+     * 在临时棋盘上走子
+     */
+    private static void go(char[][] board, String move) {
+        if (StringUtils.isEmpty(move) || move.length() < 4) {
+            return;
+        }
+        int fromI = 9 - (move.charAt(1) - '0'), toI = 9 - (move.charAt(3) - '0');
+        int fromJ = move.charAt(0) - 'a', toJ = move.charAt(2) - 'a';
+        board[toI][toJ] = board[fromI][fromJ];
+        board[fromI][fromJ] = ' ';
+    }
+
+    private static char getPos(int j, boolean isRed) {
+        if (isRed) {
+            return (char) ('０' + 9 - j);
+        } else {
+            return (char) ('０' + j + 1);
+        }
+    }
+
+    /**
+     * 在前缀的键上接一步着法
+     */
+    private static long prefixKey(long key, String move) {
+        long h = key * 0x9E3779B97F4A7C15L + (move == null ? 0 : move.hashCode()) + 1;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -84,6 +84,41 @@ public class Properties implements Serializable {
     private int mouseClickDelay = 2;
     private int mouseMoveDelay = 0;
 
+    /**
+     * 思考细节刷新频率(次/秒)，0 表示默认
+     */
+    private int thinkRefreshRate = 30;
+
+    /**
+     * 分析模式下的主变数，0 表示 1
+     */
+    private int multiPV = 1;
+
+    /**
+     * 对弈时是否后台思考
+     */
+    private boolean ponder;
+
+    /**
+     * 引擎池保留的空闲引擎数，null 表示默认，0 表示不保留
+     */
+    private Integer enginePoolSize;
+
+    /**
+     * 探测引擎协议的期限(毫秒)，null 表示默认
+     */
+    private Integer engineProbeTimeout;
+
+    /**
+     * 分析模式下局面已分析到此深度时直接显示缓存结果，不再搜索，null 表示默认
+     */
+    private Integer analysisTargetDepth;
+
+    /**
+     * 本地库查询期限(毫秒)，null 或 0 表示等待查询完成
+     */
+    private Integer localBookTimeout;
+
     private Properties(ChessBoard.BoardSize boardSize, boolean stepTip,
                        int threadNum, int hashSize, String engineName, Engine.AnalysisModel analysisModel, long analysisValue,
                        boolean stepSound, double stageWidth, double stageHeight, double splitPos, double splitPos2,
@@ -197,6 +232,62 @@ public class Properties implements Serializable {
         this.bookDelayEnd = bookDelayEnd;
     }
 
+    public int getThinkRefreshRate() {
+        return thinkRefreshRate;
+    }
+
+    public void setThinkRefreshRate(int thinkRefreshRate) {
+        this.thinkRefreshRate = thinkRefreshRate;
+    }
+
+    public int getMultiPV() {
+        return multiPV;
+    }
+
+    public void setMultiPV(int multiPV) {
+        this.multiPV = multiPV;
+    }
+
+    public boolean isPonder() {
+        return ponder;
+    }
+
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+    }
+
+    public Integer getEnginePoolSize() {
+        return enginePoolSize;
+    }
+
+    public void setEnginePoolSize(Integer enginePoolSize) {
+        this.enginePoolSize = enginePoolSize;
+    }
+
+    public Integer getEngineProbeTimeout() {
+        return engineProbeTimeout;
+    }
+
+    public void setEngineProbeTimeout(Integer engineProbeTimeout) {
+        this.engineProbeTimeout = engineProbeTimeout;
+    }
+
+    public Integer getAnalysisTargetDepth() {
+        return analysisTargetDepth;
+    }
+
+    public void setAnalysisTargetDepth(Integer analysisTargetDepth) {
+        this.analysisTargetDepth = analysisTargetDepth;
+    }
+
+    public Integer getLocalBookTimeout() {
+        return localBookTimeout;
+    }
+
+    public void setLocalBookTimeout(Integer localBookTimeout) {
+        this.localBookTimeout = localBookTimeout;
+    }
+
     public int getMouseClickDelay() {
         return mouseClickDelay;
     }
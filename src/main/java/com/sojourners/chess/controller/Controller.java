@@ -1,20 +1,25 @@
 package com.sojourners.chess.controller;
 
 import com.sojourners.chess.App;
+import com.sojourners.chess.board.BoardSnapshot;
 import com.sojourners.chess.board.ChessBoard;
+import com.sojourners.chess.board.Position;
 import com.sojourners.chess.config.Properties;
 import com.sojourners.chess.enginee.Engine;
 import com.sojourners.chess.enginee.EngineCallBack;
-import com.sojourners.chess.enginee.LocalEngine;
-import com.sojourners.chess.enginee.RemoteEngine;
+import com.sojourners.chess.enginee.EnginePool;
+import com.sojourners.chess.enginee.GameAnalyzer;
 import com.sojourners.chess.linker.*;
 import com.sojourners.chess.lock.SingleLock;
 import com.sojourners.chess.lock.WorkerTask;
 import com.sojourners.chess.menu.BoardContextMenu;
+import com.sojourners.chess.model.AnalysisCache;
 import com.sojourners.chess.model.BookData;
 import com.sojourners.chess.model.EngineConfig;
 import com.sojourners.chess.model.ManualRecord;
+import com.sojourners.chess.model.MoveAnalysis;
 import com.sojourners.chess.model.ThinkData;
+import com.sojourners.chess.model.ThinkHistory;
 import com.sojourners.chess.openbook.OpenBookManager;
 import com.sojourners.chess.util.*;
 import javafx.application.Platform;
@@ -56,6 +61,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 public class Controller implements EngineCallBack, LinkerCallBack {
 
@@ -90,6 +96,9 @@ public class Controller implements EngineCallBack, LinkerCallBack {
     @FXML
     private ComboBox<String> threadComboBox;
 
+    @FXML
+    private ComboBox<String> multiPVComboBox;
+
     @FXML
     private RadioMenuItem menuOfLargeBoard;
     @FXML
@@ -122,10 +131,20 @@ public class Controller implements EngineCallBack, LinkerCallBack {
     @FXML
     private CheckMenuItem menuOfTopWindow;
 
+    @FXML
+    private CheckMenuItem menuOfPonder;
+
     private Properties prop;
 
     private Engine engine;
 
+    /**
+     * 正在进行的整局分析，引擎启动前为 null
+     */
+    private volatile GameAnalyzer gameAnalyzer;
+
+    private boolean gameAnalyzing;
+
     private ChessBoard board;
 
     private AbstractGraphLinker graphLinker;
@@ -162,8 +181,36 @@ public class Controller implements EngineCallBack, LinkerCallBack {
     private List<String> moveList;
     private int p;
 
+    /**
+     * 已批量查询过库招的棋谱
+     */
+    private String bookedFenCode;
+    private List<String> bookedMoveList;
+
     private SingleLock lock = new SingleLock();
 
+    /**
+     * 思考细节历史(最多 128 条)
+     */
+    private ThinkHistory thinkHistory = new ThinkHistory(128);
+
+    private ThinkDataBridge thinkBridge;
+
+    /**
+     * 引擎当前思考的局面，引擎线程用它翻译思考细节
+     */
+    private volatile BoardSnapshot thinkSnapshot;
+
+    /**
+     * 引擎当前思考使用的主变数
+     */
+    private volatile int thinkMultiPV = 1;
+
+    /**
+     * 分析模式下各局面的分析结果(最多 4096 个局面)
+     */
+    private final AnalysisCache analysisCache = new AnalysisCache(4096);
+
     @FXML
     private TableView<ManualRecord> recordTable;
 
@@ -257,6 +304,12 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         prop.setLinkBackMode(item.isSelected());
     }
 
+    @FXML
+    void ponderChecked(ActionEvent event) {
+        CheckMenuItem item = (CheckMenuItem) event.getTarget();
+        prop.setPonder(item.isSelected());
+    }
+
     @FXML
     void linkAnimationChecked(ActionEvent event) {
         CheckMenuItem item = (CheckMenuItem) event.getTarget();
@@ -345,6 +398,86 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         }
     }
 
+    /**
+     * 整局分析：多个引擎进程并行分析当前棋谱，列出每步的分数损失和失误
+     */
+    @FXML
+    public void gameAnalysisClick(ActionEvent e) {
+        EngineConfig config = null;
+        for (EngineConfig ec : prop.getEngineConfigList()) {
+            if (ec.getName().equals(prop.getEngineName())) {
+                config = ec;
+            }
+        }
+        if (config == null) {
+            DialogUtils.showWarningDialog("提示", "引擎未加载");
+            return;
+        }
+        if (moveList.isEmpty()) {
+            DialogUtils.showWarningDialog("提示", "棋谱中没有着法");
+            return;
+        }
+        if (gameAnalyzing) {
+            DialogUtils.showWarningDialog("提示", "正在进行整局分析");
+            return;
+        }
+        gameAnalyzing = true;
+
+        EngineConfig ec = config;
+        String fen = fenCode;
+        List<String> moves = new ArrayList<>(moveList);
+        List<String> names = new ArrayList<>(moves.size());
+        for (int i = 1; i <= moves.size(); i++) {
+            names.add(recordTable.getItems().get(i).getName());
+        }
+        long movetime = prop.getAnalysisModel() == Engine.AnalysisModel.FIXED_TIME ? prop.getAnalysisValue() : GameAnalyzer.DEFAULT_MOVETIME;
+        int engineNum = GameAnalyzer.defaultEngineNum(1);
+        int hashSize = Math.max(prop.getHashSize() / engineNum, 16);
+        infoShowLabel.setText("整局分析中，共 " + moves.size() + " 步...");
+        infoShowLabel.setTextFill(Color.BLACK);
+
+        Thread.startVirtualThread(() -> {
+            GameAnalyzer analyzer;
+            try {
+                analyzer = new GameAnalyzer(ec, engineNum, 1, hashSize);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                Platform.runLater(() -> finishGameAnalysis(null, names, ex));
+                return;
+            }
+            gameAnalyzer = analyzer;
+            analyzer.analyze(fen, moves, movetime).whenComplete((list, ex) -> {
+                analyzer.close();
+                gameAnalyzer = null;
+                Platform.runLater(() -> finishGameAnalysis(list, names, ex));
+            });
+        });
+    }
+
+    private void finishGameAnalysis(List<MoveAnalysis> list, List<String> names, Throwable ex) {
+        gameAnalyzing = false;
+        infoShowLabel.setText("");
+        if (ex != null) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            if (!(cause instanceof CancellationException)) {
+                DialogUtils.showErrorDialog("整局分析", "整局分析失败: " + cause.getMessage());
+            }
+            return;
+        }
+        int blunders = 0;
+        StringBuilder sb = new StringBuilder();
+        for (MoveAnalysis ma : list) {
+            sb.append(String.format("%3d  %-6s  最佳 %-5s  损失 %d", ma.getPly(), names.get(ma.getPly() - 1),
+                    ma.getBestMove() == null ? "-" : ma.getBestMove(), ma.getLoss()));
+            if (ma.isBlunder()) {
+                sb.append("  失误");
+                blunders++;
+            }
+            sb.append('\n');
+        }
+        DialogUtils.showTextDialog("整局分析", "共 " + list.size() + " 步，失误 " + blunders + " 步", sb.toString());
+    }
+
     @FXML
     public void redButtonClick(ActionEvent event) {
         robotRed.setValue(!robotRed.getValue());
@@ -391,8 +524,66 @@ public class Controller implements EngineCallBack, LinkerCallBack {
 
         engine.setThreadNum(prop.getThreadNum());
         engine.setHashSize(prop.getHashSize());
+        // 多主变只用于分析模式，对弈时保持 1 以免削弱引擎
+        thinkMultiPV = robotAnalysis.getValue() ? Math.min(Math.max(prop.getMultiPV(), 1), ThinkDataBridge.MAX_MULTIPV) : 1;
+        engine.setMultiPV(thinkMultiPV);
         engine.setAnalysisModel(robotAnalysis.getValue() ? Engine.AnalysisModel.INFINITE : prop.getAnalysisModel(), prop.getAnalysisValue());
-        engine.analysis(fenCode, moveList.subList(0, p), this.board.getBoard(), redGo);
+        Position position = this.board.getPosition();
+        BoardSnapshot snapshot = new BoardSnapshot(this.board.getBoard(), position.getZobrist(redGo), redGo);
+        if (robotAnalysis.getValue() && showCachedAnalysis(snapshot)) {
+            // 已分析到目标深度，停下旧局面的搜索，其余输出不再显示
+            thinkSnapshot = null;
+            thinkBridge.clear();
+            engineStop();
+            queryBook(snapshot, position.getMirrorZobrist(redGo));
+            return;
+        }
+        thinkSnapshot = snapshot;
+        // 丢弃上一局面未显示的各主变
+        thinkBridge.clear();
+        engine.analysis(fenCode, moveList.subList(0, p), this.board.getBoard(), position.getZobrist(redGo), position.getMirrorZobrist(redGo), redGo);
+    }
+
+    /**
+     * 显示缓存的分析结果(界面线程)
+     *
+     * @return 是否已达到目标深度，不必再搜索
+     */
+    private boolean showCachedAnalysis(BoardSnapshot snapshot) {
+        List<ThinkData> list = analysisCache.get(snapshot.getZobrist(), thinkMultiPV);
+        if (list == null) {
+            return false;
+        }
+        for (ThinkData td : list) {
+            td.generate(isReverse.getValue(), snapshot, thinkMultiPV > 1);
+            if (!td.getValid()) {
+                return false;
+            }
+        }
+        // 序号大的先插入，主变 1 位于列表最前
+        for (int i = list.size() - 1; i >= 0; i--) {
+            showThinkData(list.get(i));
+        }
+        Integer target = prop.getAnalysisTargetDepth();
+        return list.get(0).getDepth() >= (target == null || target <= 0 ? AnalysisCache.DEFAULT_TARGET_DEPTH : target);
+    }
+
+    /**
+     * 不经引擎查询库招(使用缓存结果时)
+     */
+    private void queryBook(BoardSnapshot snapshot, long mirrorZobrist) {
+        if (!prop.getBookSwitch()) {
+            return;
+        }
+        boolean offManual = p / 2 >= prop.getOffManualSteps();
+        Thread.startVirtualThread(() -> {
+            try {
+                List<BookData> results = OpenBookManager.getInstance().queryBook(snapshot.copyBoard(), snapshot.getZobrist(), mirrorZobrist, snapshot.isRedGo(), offManual);
+                Platform.runLater(() -> showBookResults(results));
+            } catch (CancellationException e) {
+                // 局面已改变
+            }
+        });
     }
 
     @FXML
@@ -464,6 +655,12 @@ public class Controller implements EngineCallBack, LinkerCallBack {
     }
 
     private void browseChessRecord() {
+        // 整盘棋谱的本地库招一次查好，之后浏览各局面直接取缓存
+        if (!fenCode.equals(bookedFenCode) || !moveList.equals(bookedMoveList)) {
+            bookedFenCode = fenCode;
+            bookedMoveList = new ArrayList<>(moveList);
+            OpenBookManager.getInstance().prefetchRecord(fenCode, moveList);
+        }
         // 棋盘
         board.browseChessRecord(fenCode, moveList, p);
         // 定位table滚动条
@@ -485,6 +682,7 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         } else {
             // 其他情况，停止引擎思考
             engineStop();
+            OpenBookManager.getInstance().cancelCloudQuery();
         }
     }
 
@@ -692,6 +890,9 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         // 读取配置
         prop = Properties.getInstance();
         // 思考细节listView
+        listView.setItems(thinkHistory);
+        thinkBridge = new ThinkDataBridge(this::showThinkData);
+        thinkBridge.start();
         listView.setCellFactory(new Callback() {
             @Override
             public Object call(Object param) {
@@ -734,6 +935,7 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         initEngineView();
         // 加载引擎
         loadEngine(prop.getEngineName());
+        warmUpEngines();
         // 连线器
         initGraphLinker();
         // 按钮监听
@@ -855,6 +1057,8 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         menuOfLinkBackMode.setSelected(prop.isLinkBackMode());
         // 连线动画确认
         menuOfLinkAnimation.setSelected(prop.isLinkAnimation());
+        // 后台思考
+        menuOfPonder.setSelected(prop.isPonder());
         // show number
         menuOfShowNumber.setSelected(prop.isShowNumber());
         // 显示状态栏
@@ -979,6 +1183,7 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         // 重置趋势图
         initLineChart();
         // 重置引擎思考输出
+        thinkBridge.clear();
         listView.getItems().clear();
         // 清空思考状态信息
         this.infoShowLabel.setText("");
@@ -999,9 +1204,13 @@ public class Controller implements EngineCallBack, LinkerCallBack {
             threadComboBox.getItems().add(String.valueOf(i));
         }
         hashComboBox.getItems().addAll("16", "32", "64", "128", "256", "512", "1024", "2048", "4096", "8192", "16384");
+        for (int i = 1; i <= ThinkDataBridge.MAX_MULTIPV; i++) {
+            multiPVComboBox.getItems().add(String.valueOf(i));
+        }
         // 加载设置
         threadComboBox.setValue(String.valueOf(prop.getThreadNum()));
         hashComboBox.setValue(String.valueOf(prop.getHashSize()));
+        multiPVComboBox.setValue(String.valueOf(Math.max(prop.getMultiPV(), 1)));
     }
 
 
@@ -1052,6 +1261,15 @@ public class Controller implements EngineCallBack, LinkerCallBack {
                 }
             }
         });
+        multiPVComboBox.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<String>() {
+            @Override
+            public void changed(ObservableValue<? extends String> observableValue, String s, String t1) {
+                int num = Integer.parseInt(t1);
+                if (num != prop.getMultiPV()) {
+                    prop.setMultiPV(num);
+                }
+            }
+        });
         engineComboBox.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<String>() {
             @Override
             public void changed(ObservableValue<? extends String> observableValue, String s, String t1) {
@@ -1144,10 +1362,14 @@ public class Controller implements EngineCallBack, LinkerCallBack {
             if (StringUtils.isNotEmpty(name)) {
                 for (EngineConfig ec : prop.getEngineConfigList()) {
                     if (name.equals(ec.getName())) {
-                        if (engine != null) {
-                            engine.close();
+                        // 先取新引擎再归还旧的，避免池满时把要用的备用引擎挤掉
+                        Engine old = engine;
+                        engine = EnginePool.getInstance().acquire(ec, this);
+                        // 换了引擎，之前的分析结果不再沿用
+                        analysisCache.clear();
+                        if (old != null) {
+                            EnginePool.getInstance().release(old);
                         }
-                        engine = ec.getType() == Engine.Type.LOCAL ? new LocalEngine(ec, this) : new RemoteEngine(ec, this);
                         return;
                     }
                 }
@@ -1157,6 +1379,19 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         }
     }
 
+    /**
+     * 后台为其余引擎启动进程备用，切换时不必等待加载
+     */
+    private void warmUpEngines() {
+        List<EngineConfig> list = new ArrayList<>();
+        for (EngineConfig ec : prop.getEngineConfigList()) {
+            if (!ec.getName().equals(prop.getEngineName())) {
+                list.add(ec);
+            }
+        }
+        EnginePool.getInstance().warmUp(list);
+    }
+
     /**
      * 连线模式下自动点击走棋
      *
@@ -1187,6 +1422,8 @@ public class Controller implements EngineCallBack, LinkerCallBack {
                 board.setTip(second, null);
 
                 goCallBack(first);
+                prefetchBook(second);
+                ponder(second);
             });
 
             if (linkMode.getValue()) {
@@ -1195,27 +1432,63 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         }
     }
 
+    /**
+     * 引擎走完后，在对方思考期间预取对方各应着之后局面的库招
+     *
+     * @param pvMove 引擎预测的对方应着
+     */
+    private void prefetchBook(String pvMove) {
+        boolean engineTurn = redGo && robotRed.getValue() || !redGo && robotBlack.getValue();
+        if (!engineTurn && prop.getBookSwitch()) {
+            boolean offManual = (p + 1) / 2 >= prop.getOffManualSteps();
+            OpenBookManager.getInstance().prefetch(board.getPosition(), redGo, pvMove, offManual);
+        }
+    }
+
+    /**
+     * 引擎走完后按预测的对方应着后台思考
+     */
+    private void ponder(String ponderMove) {
+        boolean engineTurn = redGo && robotRed.getValue() || !redGo && robotBlack.getValue();
+        if (!engineTurn && !robotAnalysis.getValue() && prop.isPonder() && StringUtils.isNotEmpty(ponderMove)) {
+            engine.ponder(fenCode, moveList.subList(0, p), ponderMove);
+        }
+    }
+
     @Override
     public void thinkDetail(ThinkData td) {
         if (redGo && robotRed.getValue() || !redGo && robotBlack.getValue() || robotAnalysis.getValue()) {
-            td.generate(redGo, isReverse.getValue(), board);
+            BoardSnapshot snapshot = thinkSnapshot;
+            if (snapshot == null) {
+                return;
+            }
+            ThinkData raw = robotAnalysis.getValue() ? td.copy() : null;
+            td.generate(isReverse.getValue(), snapshot, thinkMultiPV > 1);
             if (td.getValid()) {
-                Platform.runLater(() -> {
-                    listView.getItems().add(0, td);
-                    if (listView.getItems().size() > 128) {
-                        listView.getItems().remove(listView.getItems().size() - 1);
-                    }
+                if (raw != null) {
+                    analysisCache.put(snapshot.getZobrist(), thinkMultiPV, raw);
+                }
+                thinkBridge.post(td);
+            }
+        }
+    }
 
-                    if (prop.isLinkShowInfo()) {
-                        infoShowLabel.setText(td.getTitle() + " | " + td.getBody());
-                        infoShowLabel.setTextFill(td.getScore() >= 0 ? Color.BLUE : Color.RED);
-                        timeShowLabel.setText(prop.getAnalysisModel() == Engine.AnalysisModel.FIXED_TIME ? "固定时间" + prop.getAnalysisValue() / 1000d + "s" : "固定深度" + prop.getAnalysisValue() + "层");
-                    }
+    /**
+     * 显示思考细节(界面线程，由 thinkBridge 按刷新频率调用)
+     */
+    private void showThinkData(ThinkData td) {
+        thinkHistory.push(td);
 
-                    board.setTip(td.getDetail().get(0), td.getDetail().size() > 1 ? td.getDetail().get(1) : null);
-                });
-            }
+        if (td.getMultipv() > 1) {
+            return;
+        }
+        if (prop.isLinkShowInfo()) {
+            infoShowLabel.setText(td.getTitle() + " | " + td.getBody());
+            infoShowLabel.setTextFill(td.getScore() >= 0 ? Color.BLUE : Color.RED);
+            timeShowLabel.setText(prop.getAnalysisModel() == Engine.AnalysisModel.FIXED_TIME ? "固定时间" + prop.getAnalysisValue() / 1000d + "s" : "固定深度" + prop.getAnalysisValue() + "层");
         }
+
+        board.setTip(td.getDetail().get(0), td.getDetail().size() > 1 ? td.getDetail().get(1) : null);
     }
 
     @Override
@@ -1254,10 +1527,17 @@ public class Controller implements EngineCallBack, LinkerCallBack {
         if (engine != null) {
             engine.close();
         }
+        EnginePool.getInstance().close();
+        GameAnalyzer analyzer = gameAnalyzer;
+        if (analyzer != null) {
+            analyzer.close();
+        }
 
         OpenBookManager.getInstance().close();
 //        ExecutorsUtils.getInstance().close();
 
+        thinkBridge.stop();
+
         graphLinker.stop();
 
         prop.setStageWidth(borderPane.getWidth());
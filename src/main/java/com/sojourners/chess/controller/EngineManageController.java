@@ -2,12 +2,26 @@ package com.sojourners.chess.controller;
 
 import com.sojourners.chess.App;
 import com.sojourners.chess.config.Properties;
+import com.sojourners.chess.enginee.Engine;
+import com.sojourners.chess.enginee.EngineProbe;
 import com.sojourners.chess.model.EngineConfig;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Callback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 public class EngineManageController {
 
@@ -16,6 +30,10 @@ public class EngineManageController {
 
     private Properties prop;
 
+    /**
+     * 引擎检测状态
+     */
+    private final Map<EngineConfig, String> status = new HashMap<>();
 
     @FXML
     void addButtonClick(ActionEvent e) {
@@ -46,6 +64,41 @@ public class EngineManageController {
         }
     }
 
+    /**
+     * 同时检测所有本地引擎，更新协议和状态
+     */
+    @FXML
+    void probeButtonClick(ActionEvent event) {
+        List<EngineConfig> list = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (EngineConfig ec : prop.getEngineConfigList()) {
+            if (ec.getType() == Engine.Type.LOCAL) {
+                list.add(ec);
+                paths.add(ec.getPath());
+                status.put(ec, "检测中");
+            }
+        }
+        table.refresh();
+
+        Map<String, CompletableFuture<EngineProbe.Result>> futures = EngineProbe.probeAll(paths, EngineProbe.getDeadline());
+        for (EngineConfig ec : list) {
+            futures.get(ec.getPath()).whenComplete((r, e) -> Platform.runLater(() -> {
+                if (r != null) {
+                    if (!r.getProtocol().equals(ec.getProtocol())) {
+                        // 协议变化写入配置，与添加、编辑引擎一样保存
+                        ec.setProtocol(r.getProtocol());
+                        prop.save();
+                    }
+                    status.put(ec, "正常 " + r.getElapsed() + "ms");
+                } else {
+                    Throwable t = e instanceof CompletionException ? e.getCause() : e;
+                    status.put(ec, t instanceof TimeoutException ? "超时" : "无法启动");
+                }
+                table.refresh();
+            }));
+        }
+    }
+
     private void refreshTable() {
         table.getItems().clear();
         for (EngineConfig ec : prop.getEngineConfigList()) {
@@ -61,6 +114,9 @@ public class EngineManageController {
         pathCol.setCellValueFactory(new PropertyValueFactory<EngineConfig, String>("path"));
         TableColumn proCol = (TableColumn) table.getColumns().get(2);
         proCol.setCellValueFactory(new PropertyValueFactory<EngineConfig, String>("protocol"));
+        TableColumn statusCol = (TableColumn) table.getColumns().get(3);
+        statusCol.setCellValueFactory((Callback<TableColumn.CellDataFeatures<EngineConfig, String>, ObservableValue<String>>)
+                c -> new SimpleStringProperty(status.get(c.getValue())));
 
         prop = Properties.getInstance();
 
@@ -3,10 +3,14 @@ package com.sojourners.chess.controller;
 import com.sojourners.chess.App;
 import com.sojourners.chess.config.Properties;
 import com.sojourners.chess.model.LocalBook;
+import com.sojourners.chess.openbook.OpenBookManager;
+import com.sojourners.chess.util.DialogUtils;
 import com.sojourners.chess.util.PathUtils;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -19,6 +23,9 @@ public class LocalBookController {
     @FXML
     private TableView table;
 
+    @FXML
+    private Button indexButton;
+
     private Properties prop;
 
     public static boolean change;
@@ -29,6 +36,7 @@ public class LocalBookController {
         fileChooser.setInitialDirectory(new File(PathUtils.getJarPath()));
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("obk(*.obk)", "*.obk"));
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("pfBook(*.pfBook)", "*.pfBook"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("mbk(*.mbk)", "*.mbk"));
         File file = fileChooser.showOpenDialog(App.getLocalBookSetting());
         if (file != null) {
             prop.getOpenBookList().add(file.getPath());
@@ -67,6 +75,36 @@ public class LocalBookController {
         }
     }
 
+    /**
+     * 为选中的 SQLite 库建立 vkey 索引(写入库文件)，在后台进行
+     */
+    @FXML
+    void indexButtonClick(ActionEvent event) {
+        int index = table.getSelectionModel().getSelectedIndex();
+        if (index < 0) {
+            return;
+        }
+        String path = prop.getOpenBookList().get(index);
+        indexButton.setDisable(true);
+        indexButton.setText("建立索引中...");
+        Thread.startVirtualThread(() -> {
+            long s = System.currentTimeMillis();
+            String msg;
+            try {
+                msg = OpenBookManager.createKeyIndex(path) ? "索引已建立，用时 " + (System.currentTimeMillis() - s) + "ms" : "已有索引或无需索引";
+            } catch (Exception e) {
+                e.printStackTrace();
+                msg = "建立索引失败: " + e.getMessage();
+            }
+            String result = msg;
+            Platform.runLater(() -> {
+                indexButton.setDisable(false);
+                indexButton.setText("建立索引");
+                DialogUtils.showInfoDialog("建立索引", result);
+            });
+        });
+    }
+
     private void refreshTable() {
         table.getItems().clear();
         for (String book : prop.getOpenBookList()) {
@@ -0,0 +1,72 @@
+package com.sojourners.chess.controller;
+
+import com.sojourners.chess.config.Properties;
+import com.sojourners.chess.model.ThinkData;
+import javafx.animation.AnimationTimer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 引擎思考数据到界面线程的传递
+ * <p>
+ * 引擎线程只把数据放进对应主变序号的槽位(新数据覆盖未显示的旧数据，无锁)；
+ * 界面线程每个脉冲检查一次，按配置的刷新频率把各槽位最新的数据交给界面，
+ * 避免每行输出都提交一次 Platform.runLater。
+ */
+public class ThinkDataBridge extends AnimationTimer {
+
+    /**
+     * 支持的最大主变数
+     */
+    public static final int MAX_MULTIPV = 16;
+
+    private static final int DEFAULT_REFRESH_RATE = 30;
+
+    private final AtomicReferenceArray<ThinkData> slots = new AtomicReferenceArray<>(MAX_MULTIPV);
+
+    private final Consumer<ThinkData> consumer;
+
+    private long lastFlush;
+
+    /**
+     * @param consumer 在界面线程中处理思考数据
+     */
+    public ThinkDataBridge(Consumer<ThinkData> consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * 提交思考数据，可在任意线程调用
+     */
+    public void post(ThinkData td) {
+        int slot = Math.min(Math.max(td.getMultipv(), 1), MAX_MULTIPV) - 1;
+        slots.set(slot, td);
+    }
+
+    /**
+     * 丢弃尚未显示的数据
+     */
+    public void clear() {
+        for (int i = 0; i < MAX_MULTIPV; i++) {
+            slots.set(i, null);
+        }
+    }
+
+    @Override
+    public void handle(long now) {
+        int rate = Properties.getInstance().getThinkRefreshRate();
+        long interval = 1_000_000_000L / (rate > 0 ? rate : DEFAULT_REFRESH_RATE);
+        if (now - lastFlush < interval) {
+            return;
+        }
+        lastFlush = now;
+        // 序号大的先交出，主变 1 最后插入，位于列表最前
+        for (int i = MAX_MULTIPV - 1; i >= 0; i--) {
+            ThinkData td = slots.getAndSet(i, null);
+            if (td != null) {
+                consumer.accept(td);
+            }
+        }
+    }
+}
@@ -1,8 +1,28 @@
 package com.sojourners.chess.enginee;
 
+import com.sojourners.chess.board.MoveGenerator;
+import com.sojourners.chess.config.Properties;
+import com.sojourners.chess.model.BookData;
+import com.sojourners.chess.model.EngineConfig;
+import com.sojourners.chess.model.ThinkData;
+import com.sojourners.chess.openbook.OpenBookManager;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * 引擎
+ * <p>
+ * 协议、搜索会话、后台思考和选项设置在这里实现，子类只负责与引擎的连接：
+ * 实现 {@link #cmd} 发送命令，把引擎输出的每一行交给 {@link #handleLine}。
+ */
 public abstract class Engine {
 
     public enum AnalysisModel {
@@ -23,35 +43,369 @@ public abstract class Engine {
         };
     }
 
+    protected final String protocol;
+
+    private AnalysisModel analysisModel;
+
+    private long analysisValue;
+
+    private volatile boolean threadNumChange;
+
+    private int threadNum;
+
+    private volatile boolean hashSizeChange;
+
+    private int hashSize;
+
+    private volatile boolean multiPVChange;
+
+    private int multiPV = 1;
+
+    /**
+     * 后台思考中的 position 命令(含预测的对方应着)，不在后台思考时为 null
+     */
+    private final AtomicReference<String> ponderPosition = new AtomicReference<>();
+
+    private final SearchTracker tracker = new SearchTracker();
+
+    /**
+     * 等待中的 isready
+     */
+    private volatile CompletableFuture<Void> readyFuture;
+
+    private volatile EngineCallBack cb;
+
+    private final Random random = new SecureRandom();
+
+    /**
+     * 引擎输出解析，只在读取线程中使用
+     */
+    private final InfoParser parser = new InfoParser();
+
+    private final EngineInfo info = new EngineInfo();
+
+    protected Engine(EngineConfig ec, EngineCallBack cb) {
+        this.protocol = ec.getProtocol();
+        this.cb = cb;
+    }
+
+    /**
+     * 发送命令
+     */
+    protected abstract void cmd(String command);
+
+    /**
+     * 关闭引擎连接
+     */
+    public abstract void close();
+
+    /**
+     * 连接建立后发送协议命令和配置的选项
+     */
+    protected void init(EngineConfig ec) {
+        cmd(protocol);
+        for (Map.Entry<String, String> entry : ec.getOptions().entrySet()) {
+            if ("uci".equals(protocol)) {
+                cmd("setoption name " + entry.getKey() + " value " + entry.getValue());
+            } else if ("ucci".equals(protocol)) {
+                cmd("setoption " + entry.getKey() + " " + entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 处理引擎输出的一行，只在读取线程中调用
+     */
+    protected void handleLine(String line) {
+        switch (parser.parse(line, info)) {
+            case InfoParser.INFO -> thinkDetail(info);
+            case InfoParser.BESTMOVE -> bestMove(info);
+            case InfoParser.READY -> readyOk();
+        }
+    }
+
+    private void sleep(long t) {
+        try {
+            Thread.sleep(t);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
+        }
+    }
+
+    private void bestMove(EngineInfo info) {
+        SearchTracker.Session s = tracker.bestMove();
+        if (s == null) {
+            // 已被取代或取消的搜索
+            return;
+        }
+        if (info.bestMove < 0) {
+            s.future.complete(new SearchResult(s.id, null, null, s.last));
+            return;
+        }
+        String best = MoveGenerator.toUci(info.bestMove), ponder = info.ponderMove >= 0 ? MoveGenerator.toUci(info.ponderMove) : null;
+        s.future.complete(new SearchResult(s.id, best, ponder, s.last));
+        if (Properties.getInstance().getEngineDelayEnd() > 0 && Properties.getInstance().getEngineDelayEnd() >= Properties.getInstance().getEngineDelayStart()) {
+            int t = random.nextInt(Properties.getInstance().getEngineDelayStart(), Properties.getInstance().getEngineDelayEnd());
+            sleep(t);
+        }
+        cb.bestMove(best, ponder);
+    }
+
+    private void thinkDetail(EngineInfo info) {
+        SearchTracker.Session s = tracker.info();
+        if (info.pvLength > 0 && s != null) {
+            ThinkData td = info.toThinkData();
+            if (td.getMultipv() <= 1) {
+                s.last = td;
+            }
+            cb.thinkDetail(td);
+        }
+    }
+
     /**
      * 设置线程数
      */
-    public abstract void setThreadNum(int threadNum);
+    public void setThreadNum(int threadNum) {
+        if (threadNum != this.threadNum) {
+            this.threadNum = threadNum;
+            this.threadNumChange = true;
+        }
+    }
 
     /**
      * 设置哈希大小
      */
-    public abstract void setHashSize(int hashSize);
+    public void setHashSize(int hashSize) {
+        if (hashSize != this.hashSize) {
+            this.hashSize = hashSize;
+            this.hashSizeChange = true;
+        }
+    }
+
+    /**
+     * 设置主变数(MultiPV)，大于 1 时引擎同时给出多个候选着法
+     */
+    public void setMultiPV(int multiPV) {
+        if (multiPV != this.multiPV) {
+            this.multiPV = multiPV;
+            this.multiPVChange = true;
+        }
+    }
 
     /**
      * 设置分析模式
      */
-    public abstract void setAnalysisModel(AnalysisModel model, long v);
+    public void setAnalysisModel(AnalysisModel model, long v) {
+        this.analysisModel = model;
+        this.analysisValue = v;
+    }
 
     /**
      * 执行分析
+     *
+     * @param zobrist       当前局面键值(含行棋方)，用于查询开局库
+     * @param mirrorZobrist 左右镜像局面的键值
      */
-    public abstract void analysis(String fenCode, List<String> moves, char[][] board, boolean redGo);
+    public void analysis(String fenCode, List<String> moves, char[][] board, long zobrist, long mirrorZobrist, boolean redGo) {
+        long request = tracker.request();
+        Thread.startVirtualThread(() -> {
+            if (Properties.getInstance().getBookSwitch()) {
+                long s = System.currentTimeMillis();
+                List<BookData> results;
+                try {
+                    results = OpenBookManager.getInstance().queryBook(board, zobrist, mirrorZobrist, redGo, moves.size() / 2 >= Properties.getInstance().getOffManualSteps());
+                } catch (CancellationException e) {
+                    // 局面已改变，放弃本次分析
+                    return;
+                }
+                System.out.println("查询库时间" + (System.currentTimeMillis() - s));
+                this.cb.showBookResults(results);
+                if (!results.isEmpty() && this.analysisModel != AnalysisModel.INFINITE) {
+                    if (Properties.getInstance().getBookDelayEnd() > 0 && Properties.getInstance().getBookDelayEnd() >= Properties.getInstance().getBookDelayStart()) {
+                        int t = random.nextInt(Properties.getInstance().getBookDelayStart(), Properties.getInstance().getBookDelayEnd());
+                        sleep(t);
+                    }
+                    if (!tracker.isLatest(request)) {
+                        return;
+                    }
+                    // 走库招，停止后台思考
+                    stop();
+                    this.cb.bestMove(results.get(0).getMove(), null);
+                    return;
+                }
+            }
+            search(request, fenCode, moves);
+        });
+    }
 
     /**
-     * 停止分析
+     * 直接搜索，不查询开局库
      */
-    public abstract void stop();
+    public void analysis(String fenCode, List<String> moves) {
+        analyze(fenCode, moves);
+    }
 
     /**
-     * 关闭引擎连接
+     * 直接搜索，不查询开局库
+     * <p>
+     * 每次搜索有自己的会话编号：新的搜索开始时，之前未完成的结果立即以 CancellationException 结束，
+     * 旧搜索随后到达的 info/bestmove 被丢弃，不会当作新局面的结果。
+     *
+     * @return 搜索结果，引擎输出 bestmove 时完成
      */
-    public abstract void close();
+    public CompletableFuture<SearchResult> analyze(String fenCode, List<String> moves) {
+        return search(tracker.request(), fenCode, moves);
+    }
+
+    private synchronized CompletableFuture<SearchResult> search(long request, String fenCode, List<String> moves) {
+        if (!tracker.isLatest(request)) {
+            // 已有更新的分析请求(多个线程先后到达时)
+            return CompletableFuture.failedFuture(new CancellationException("搜索已被新的搜索取代"));
+        }
+        SearchTracker.Session hit = ponderHit(fenCode, moves);
+        if (hit != null) {
+            return hit.future;
+        }
+        stop();
+        applyOptions();
+
+        cmd(positionCommand(fenCode, moves));
+        return go(false).future;
+    }
+
+    /**
+     * 发送有变化的线程数、哈希、主变数设置
+     */
+    private void applyOptions() {
+        if (threadNumChange) {
+            cmd(("uci".equals(this.protocol) ? "setoption name Threads value " : "setoption Threads ") + threadNum);
+            this.threadNumChange = false;
+        }
+        if (hashSizeChange) {
+            cmd(("uci".equals(this.protocol) ? "setoption name Hash value " : "setoption Hash ") + hashSize);
+            this.hashSizeChange = false;
+        }
+        if (multiPVChange) {
+            cmd(("uci".equals(this.protocol) ? "setoption name MultiPV value " : "setoption MultiPV ") + multiPV);
+            this.multiPVChange = false;
+        }
+    }
+
+    /**
+     * 应用尚未生效的设置(线程数、哈希等)并等待引擎就绪(isready/readyok)
+     */
+    public synchronized CompletableFuture<Void> ready() {
+        CompletableFuture<Void> f = readyFuture;
+        if (f == null || f.isDone()) {
+            f = new CompletableFuture<>();
+            readyFuture = f;
+            applyOptions();
+            cmd("isready");
+        }
+        return f;
+    }
+
+    private void readyOk() {
+        CompletableFuture<Void> f = readyFuture;
+        if (f != null) {
+            f.complete(null);
+        }
+    }
+
+    /**
+     * 开始新的对局(ucinewgame)，引擎回收复用前调用
+     */
+    public synchronized void newGame() {
+        // 正在进行的搜索结果不再交给任何人
+        ponderPosition.set(null);
+        tracker.cancel();
+        if (tracker.isSearching()) {
+            cmd("stop");
+        }
+        if ("uci".equals(this.protocol)) {
+            cmd("ucinewgame");
+        }
+    }
+
+    /**
+     * 更换回调(引擎从引擎池交给新的使用者)
+     */
+    public void setCallBack(EngineCallBack cb) {
+        this.cb = cb;
+    }
+
+    /**
+     * 后台思考：引擎走完后按预测的对方应着继续思考。对方走了这步时转为正常思考(ponderhit)，
+     * 否则停止并丢弃其结果，重新分析
+     *
+     * @param moves      当前局面的着法
+     * @param ponderMove 预测的对方应着
+     */
+    public synchronized void ponder(String fenCode, List<String> moves, String ponderMove) {
+        if (analysisModel == AnalysisModel.INFINITE) {
+            return;
+        }
+        stop();
+        List<String> list = new ArrayList<>(moves);
+        list.add(ponderMove);
+        String position = positionCommand(fenCode, list);
+        cmd(position);
+        ponderPosition.set(position);
+        go(true);
+    }
+
+    /**
+     * 对方走的正是预测的应着时，让后台思考转为正常思考
+     *
+     * @return 后台思考的会话，未命中返回 null
+     */
+    private SearchTracker.Session ponderHit(String fenCode, List<String> moves) {
+        String position = ponderPosition.get();
+        SearchTracker.Session s = tracker.current();
+        if (position != null && s != null && s.ponder && position.equals(positionCommand(fenCode, moves)) && ponderPosition.compareAndSet(position, null)) {
+            tracker.hit(s);
+            cmd("ponderhit");
+            return s;
+        }
+        return null;
+    }
+
+    private String positionCommand(String fenCode, List<String> moves) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("position fen ").append(fenCode);
+        if (moves != null && !moves.isEmpty()) {
+            sb.append(" moves");
+            for (String move : moves) {
+                sb.append(" ").append(move);
+            }
+        }
+        return sb.toString();
+    }
 
+    private SearchTracker.Session go(boolean ponder) {
+        SearchTracker.Session s = tracker.start(ponder);
+        String go = ponder ? "go ponder " : "go ";
+        if (analysisModel == AnalysisModel.FIXED_STEPS) {
+            cmd(go + "depth " + analysisValue);
+        } else if (analysisModel == AnalysisModel.FIXED_TIME) {
+            cmd(go + "movetime " + analysisValue);
+        } else {
+            cmd(go + "infinite");
+        }
+        return s;
+    }
 
+    /**
+     * 停止分析
+     */
+    public void stop() {
+        if (ponderPosition.getAndSet(null) != null) {
+            // 后台思考的结果不属于当前局面
+            tracker.cancel();
+        }
+        if (tracker.isSearching()) {
+            cmd("stop");
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.board.MoveGenerator;
+import com.sojourners.chess.model.ThinkData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 引擎输出的一行 info/bestmove 解析结果
+ * <p>
+ * 字段均为基本类型，由 {@link InfoParser} 原地填充，每个读取线程复用同一个实例。
+ * 着法按 {@link MoveGenerator} 的编码保存，无效为 -1。
+ */
+public class EngineInfo {
+
+    /**
+     * 保存的主要变例最大长度
+     */
+    public static final int MAX_PV = 128;
+
+    public int depth;
+
+    public int seldepth;
+
+    public int multipv;
+
+    public boolean hasScore;
+
+    public int score;
+
+    public boolean hasMate;
+
+    public int mate;
+
+    public boolean lowerbound;
+
+    public boolean upperbound;
+
+    public boolean hasNodes;
+
+    public long nodes;
+
+    public boolean hasNps;
+
+    public long nps;
+
+    public boolean hasTime;
+
+    public long time;
+
+    public int hashfull;
+
+    public final int[] pv = new int[MAX_PV];
+
+    public int pvLength;
+
+    public int bestMove;
+
+    public int ponderMove;
+
+    public void reset() {
+        depth = 0;
+        seldepth = 0;
+        multipv = 1;
+        hasScore = false;
+        score = 0;
+        hasMate = false;
+        mate = 0;
+        lowerbound = false;
+        upperbound = false;
+        hasNodes = false;
+        nodes = 0;
+        hasNps = false;
+        nps = 0;
+        hasTime = false;
+        time = 0;
+        hashfull = 0;
+        pvLength = 0;
+        bestMove = -1;
+        ponderMove = -1;
+    }
+
+    /**
+     * 转为界面显示用的思考数据
+     */
+    public ThinkData toThinkData() {
+        ThinkData td = new ThinkData();
+        td.setDepth(depth);
+        td.setMultipv(multipv);
+        if (hasMate) {
+            td.setMate(mate);
+        } else {
+            td.setScore(score);
+        }
+        td.setNps(nps);
+        if (hasNodes) {
+            td.setNodes(nodes);
+        }
+        td.setTime(time);
+        List<String> detail = new ArrayList<>(pvLength);
+        for (int i = 0; i < pvLength; i++) {
+            detail.add(MoveGenerator.toUci(pv[i]));
+        }
+        td.setDetail(detail);
+        return td;
+    }
+}
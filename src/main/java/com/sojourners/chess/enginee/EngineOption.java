@@ -0,0 +1,114 @@
+package com.sojourners.chess.enginee;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 引擎选项描述
+ * <p>
+ * 解析引擎对 uci/ucci 指令输出的 option 行，兼容 UCI 的 option name X type ... 与 UCCI 的 option X type ...，
+ * 选项名可以含空格，combo 类型可有多个 var。
+ */
+public class EngineOption {
+
+    private static final Set<String> KEYWORDS = Set.of("name", "type", "default", "min", "max", "var");
+
+    private String name;
+
+    /**
+     * check、spin、combo、button、string(UCCI 还有 label)
+     */
+    private String type;
+
+    /**
+     * 默认值，没有(如 button)时为 null
+     */
+    private String defaultValue;
+
+    private Integer min;
+
+    private Integer max;
+
+    private final List<String> vars = new ArrayList<>();
+
+    /**
+     * 解析 option 行
+     *
+     * @return 不是 option 行或缺少名称、类型时返回 null
+     */
+    public static EngineOption parse(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens.length < 2 || !"option".equals(tokens[0])) {
+            return null;
+        }
+        EngineOption o = new EngineOption();
+        int i = "name".equals(tokens[1]) ? 2 : 1;
+        String key = "name";
+        StringBuilder value = new StringBuilder();
+        for (; i < tokens.length; i++) {
+            // 选项名中的词不当作关键字(type 之前都是名称)
+            if (KEYWORDS.contains(tokens[i]) && !("name".equals(key) && !"type".equals(tokens[i]))) {
+                o.set(key, value.toString());
+                key = tokens[i];
+                value.setLength(0);
+            } else {
+                if (value.length() > 0) {
+                    value.append(' ');
+                }
+                value.append(tokens[i]);
+            }
+        }
+        o.set(key, value.toString());
+        return o.name == null || o.name.isEmpty() || o.type == null ? null : o;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "name" -> name = value;
+            case "type" -> type = value;
+            case "default" -> defaultValue = "<empty>".equals(value) ? "" : value;
+            case "min" -> min = toInt(value);
+            case "max" -> max = toInt(value);
+            case "var" -> vars.add(value);
+        }
+    }
+
+    private static Integer toInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    public Integer getMin() {
+        return min;
+    }
+
+    public Integer getMax() {
+        return max;
+    }
+
+    public List<String> getVars() {
+        return vars;
+    }
+
+    @Override
+    public String toString() {
+        return name + " type " + type + (defaultValue != null ? " default " + defaultValue : "")
+                + (min != null ? " min " + min : "") + (max != null ? " max " + max : "") + (vars.isEmpty() ? "" : " var " + vars);
+    }
+}
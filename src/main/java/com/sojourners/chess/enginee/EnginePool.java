@@ -0,0 +1,212 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.config.Properties;
+import com.sojourners.chess.model.BookData;
+import com.sojourners.chess.model.EngineConfig;
+import com.sojourners.chess.model.ThinkData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 引擎池
+ * <p>
+ * 保留若干已就绪的引擎进程(已完成 uci/isready、设置好选项、分配好哈希)：切换引擎时直接取用，
+ * 换下的引擎发送 ucinewgame 后放回池中，再切回来不必重新启动进程、加载网络。
+ * 池中按引擎配置(路径、协议、选项)区分，配置改动后旧的进程不会再被取用，超出容量时最先关闭。
+ */
+public class EnginePool {
+
+    private static volatile EnginePool instance;
+
+    /**
+     * 默认保留的空闲引擎数
+     */
+    private static final int DEFAULT_SIZE = 1;
+
+    /**
+     * 预热时等待引擎就绪的时间
+     */
+    private static final long READY_TIMEOUT = 30000;
+
+    /**
+     * 池中引擎的回调，丢弃所有输出
+     */
+    private static final EngineCallBack IDLE = new EngineCallBack() {
+        @Override
+        public void bestMove(String first, String second) {
+        }
+
+        @Override
+        public void thinkDetail(ThinkData td) {
+        }
+
+        @Override
+        public void showBookResults(List<BookData> list) {
+        }
+    };
+
+    /**
+     * 空闲引擎，先放入的在前
+     */
+    private final LinkedList<Idle> idle = new LinkedList<>();
+
+    /**
+     * 由引擎池创建的引擎对应的配置键值
+     */
+    private final Map<Engine, String> keys = new IdentityHashMap<>();
+
+    private boolean closed;
+
+    public static EnginePool getInstance() {
+        if (instance == null) {
+            synchronized (EnginePool.class) {
+                if (instance == null) {
+                    instance = new EnginePool();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EnginePool() {
+
+    }
+
+    /**
+     * 取一个引擎，池中没有时新建
+     */
+    public Engine acquire(EngineConfig ec, EngineCallBack cb) throws IOException {
+        String key = key(ec);
+        synchronized (this) {
+            for (Iterator<Idle> it = idle.iterator(); it.hasNext(); ) {
+                Idle i = it.next();
+                if (i.key.equals(key)) {
+                    it.remove();
+                    i.engine.setCallBack(cb);
+                    return i.engine;
+                }
+            }
+        }
+        return create(ec, cb);
+    }
+
+    /**
+     * 归还引擎，池已满时关闭最早放入的
+     */
+    public void release(Engine engine) {
+        String key;
+        synchronized (this) {
+            key = keys.get(engine);
+        }
+        if (key == null || getSize() <= 0) {
+            close(engine);
+            return;
+        }
+        engine.setCallBack(IDLE);
+        engine.newGame();
+        List<Engine> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                evicted.add(engine);
+            } else {
+                idle.add(new Idle(key, engine));
+                while (idle.size() > getSize()) {
+                    evicted.add(idle.removeFirst().engine);
+                }
+            }
+        }
+        for (Engine e : evicted) {
+            close(e);
+        }
+    }
+
+    /**
+     * 在后台为这些引擎各启动一个进程备用(池中已有或超出容量的跳过)
+     */
+    public void warmUp(List<EngineConfig> list) {
+        Thread.startVirtualThread(() -> {
+            for (EngineConfig ec : list) {
+                String key = key(ec);
+                synchronized (this) {
+                    if (closed || idle.size() >= getSize()) {
+                        return;
+                    }
+                    if (idle.stream().anyMatch(i -> i.key.equals(key))) {
+                        continue;
+                    }
+                }
+                Engine engine = null;
+                try {
+                    engine = create(ec, IDLE);
+                    engine.setThreadNum(Properties.getInstance().getThreadNum());
+                    engine.setHashSize(Properties.getInstance().getHashSize());
+                    engine.ready().get(READY_TIMEOUT, TimeUnit.MILLISECONDS);
+                    release(engine);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    if (engine != null) {
+                        close(engine);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 关闭池中所有引擎
+     */
+    public void close() {
+        List<Idle> list;
+        synchronized (this) {
+            closed = true;
+            list = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (Idle i : list) {
+            close(i.engine);
+        }
+    }
+
+    private Engine create(EngineConfig ec, EngineCallBack cb) throws IOException {
+        Engine engine = ec.getType() == Engine.Type.LOCAL ? new LocalEngine(ec, cb) : new RemoteEngine(ec, cb);
+        synchronized (this) {
+            keys.put(engine, key(ec));
+        }
+        return engine;
+    }
+
+    private void close(Engine engine) {
+        synchronized (this) {
+            keys.remove(engine);
+        }
+        engine.close();
+    }
+
+    private int getSize() {
+        Integer size = Properties.getInstance().getEnginePoolSize();
+        return size == null ? DEFAULT_SIZE : size;
+    }
+
+    private static String key(EngineConfig ec) {
+        return ec.getType() + "|" + ec.getPath() + "|" + ec.getProtocol() + "|" + ec.getOptions();
+    }
+
+    private static class Idle {
+
+        private final String key;
+
+        private final Engine engine;
+
+        Idle(String key, Engine engine) {
+            this.key = key;
+            this.engine = engine;
+        }
+    }
+}
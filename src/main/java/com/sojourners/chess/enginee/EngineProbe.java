@@ -0,0 +1,174 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.config.Properties;
+import com.sojourners.chess.util.PathUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地引擎探测
+ * <p>
+ * 启动引擎进程，同时发送 uci 和 ucci，收到 uciok/ucciok 即完成，不做固定等待；
+ * 期间输出的 option 行解析为 {@link EngineOption}。超过期限未应答则以 TimeoutException 结束。
+ * 多个引擎可以同时探测。
+ */
+public class EngineProbe {
+
+    /**
+     * 默认探测期限(毫秒)
+     */
+    public static final long DEFAULT_DEADLINE = 5000;
+
+    /**
+     * 探测结果
+     */
+    public static class Result {
+
+        private final String protocol;
+
+        private final String name;
+
+        private final List<EngineOption> options;
+
+        private final long elapsed;
+
+        Result(String protocol, String name, List<EngineOption> options, long elapsed) {
+            this.protocol = protocol;
+            this.name = name;
+            this.options = options;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * uci 或 ucci
+         */
+        public String getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * 引擎自报的名称(id name)，可能为 null
+         */
+        public String getName() {
+            return name;
+        }
+
+        public List<EngineOption> getOptions() {
+            return options;
+        }
+
+        /**
+         * 探测用时(毫秒)
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * 有默认值的选项(不含由界面设置的线程数和哈希)，用于保存到引擎配置
+         */
+        public LinkedHashMap<String, String> getDefaultOptions() {
+            LinkedHashMap<String, String> map = new LinkedHashMap<>();
+            for (EngineOption o : options) {
+                if (o.getDefaultValue() != null && !o.getName().contains("Threads") && !o.getName().contains("Hash")) {
+                    map.put(o.getName(), o.getDefaultValue());
+                }
+            }
+            return map;
+        }
+    }
+
+    /**
+     * 配置的探测期限
+     */
+    public static long getDeadline() {
+        Integer t = Properties.getInstance().getEngineProbeTimeout();
+        return t == null || t <= 0 ? DEFAULT_DEADLINE : t;
+    }
+
+    /**
+     * 探测一个本地引擎
+     *
+     * @param deadline 期限(毫秒)
+     */
+    public static CompletableFuture<Result> probe(String path, long deadline) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        Process p;
+        try {
+            p = Runtime.getRuntime().exec(path, null, PathUtils.getParentDir(path));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
+        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
+
+        Thread.startVirtualThread(() -> {
+            List<EngineOption> options = new ArrayList<>();
+            String name = null;
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    line = line.trim();
+                    if ("uciok".equals(line) || "ucciok".equals(line)) {
+                        future.complete(new Result(line.substring(0, line.length() - 2), name, options, System.currentTimeMillis() - start));
+                        return;
+                    }
+                    if (line.startsWith("option")) {
+                        EngineOption o = EngineOption.parse(line);
+                        if (o != null) {
+                            options.add(o);
+                        }
+                    } else if (line.startsWith("id name ")) {
+                        name = line.substring(8).trim();
+                    }
+                }
+                future.completeExceptionally(new IOException("引擎未应答 uci/ucci 就已退出"));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        try {
+            // 两种协议同时发出，引擎只会应答支持的一种
+            bw.write("uci" + System.lineSeparator());
+            bw.write("ucci" + System.lineSeparator());
+            bw.flush();
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future.orTimeout(deadline, TimeUnit.MILLISECONDS).whenComplete((r, e) -> {
+            try {
+                bw.write("quit" + System.lineSeparator());
+                bw.flush();
+            } catch (IOException ignored) {
+                // 进程可能已退出
+            }
+            p.destroy();
+        });
+    }
+
+    /**
+     * 同时探测多个本地引擎
+     *
+     * @return 路径 -> 探测结果
+     */
+    public static Map<String, CompletableFuture<Result>> probeAll(List<String> paths, long deadline) {
+        Map<String, CompletableFuture<Result>> map = new LinkedHashMap<>();
+        for (String path : paths) {
+            map.put(path, probe(path, deadline));
+        }
+        return map;
+    }
+}
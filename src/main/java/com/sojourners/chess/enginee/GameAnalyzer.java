@@ -0,0 +1,297 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.board.MoveGenerator;
+import com.sojourners.chess.board.Position;
+import com.sojourners.chess.model.BookData;
+import com.sojourners.chess.model.EngineConfig;
+import com.sojourners.chess.model.MoveAnalysis;
+import com.sojourners.chess.model.ThinkData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 多引擎并行分析整局棋
+ * <p>
+ * 启动 K 个引擎进程(各自的线程数、哈希大小)，所有待分析局面放进同一个队列，
+ * 每个引擎分析完一个局面就取下一个，快慢不同的引擎自然均衡，一局 N 步约需 (N+1) × movetime / K。
+ * 可以同时提交多局，结果给出每步的最佳着法、分数损失和失误标记。
+ */
+public class GameAnalyzer {
+
+    /**
+     * 默认失误阈值(分)
+     */
+    public static final int DEFAULT_BLUNDER_THRESHOLD = 200;
+
+    /**
+     * 默认每个局面的思考时间(毫秒)
+     */
+    public static final long DEFAULT_MOVETIME = 1000;
+
+    /**
+     * 杀棋折算的分数
+     */
+    private static final int MATE_SCORE = 30000;
+
+    /**
+     * 超过 movetime 多久仍没有 bestmove 视为失败
+     */
+    private static final long SEARCH_GRACE = 5000;
+
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    /**
+     * @param engineNum 引擎进程数
+     * @param threadNum 每个引擎的线程数
+     * @param hashSize  每个引擎的哈希大小(MB)
+     */
+    public GameAnalyzer(EngineConfig ec, int engineNum, int threadNum, int hashSize) throws IOException {
+        try {
+            for (int i = 0; i < engineNum; i++) {
+                workers.add(new Worker(ec, threadNum, hashSize));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (Worker w : workers) {
+            w.thread = Thread.startVirtualThread(w::run);
+        }
+    }
+
+    /**
+     * 按 CPU 核数计算引擎进程数
+     */
+    public static int defaultEngineNum(int threadNum) {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(threadNum, 1));
+    }
+
+    public CompletableFuture<List<MoveAnalysis>> analyze(String fenCode, List<String> moveList, long movetime) {
+        return analyze(fenCode, moveList, movetime, DEFAULT_BLUNDER_THRESHOLD);
+    }
+
+    /**
+     * 分析整局棋
+     *
+     * @param fenCode        起始局面
+     * @param moveList       着法
+     * @param movetime       每个局面的思考时间(毫秒)
+     * @param blunderThreshold 损失达到多少分标记为失误
+     * @return 每步着法的分析结果
+     */
+    public CompletableFuture<List<MoveAnalysis>> analyze(String fenCode, List<String> moveList, long movetime, int blunderThreshold) {
+        List<String> moves = new ArrayList<>(moveList);
+
+        // 先走一遍检查着法，有错误时不提交任何局面
+        boolean[] mated = new boolean[moves.size() + 1];
+        Position pos = new Position();
+        pos.loadFen(fenCode);
+        boolean redGo = fenCode.contains("w");
+        for (int i = 0; i <= moves.size(); i++) {
+            mated[i] = pos.isMated(redGo);
+            if (i < moves.size()) {
+                int move = MoveGenerator.fromUci(moves.get(i));
+                if (!MoveGenerator.isLegal(pos, redGo, move)) {
+                    return CompletableFuture.failedFuture(new IllegalArgumentException("第 " + (i + 1) + " 步着法不合法: " + moves.get(i)));
+                }
+                pos.makeMove(MoveGenerator.from(move), MoveGenerator.to(move));
+                redGo = !redGo;
+            }
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new CancellationException("分析已关闭"));
+        }
+
+        List<CompletableFuture<Eval>> evals = new ArrayList<>(moves.size() + 1);
+        for (int i = 0; i <= moves.size(); i++) {
+            if (mated[i]) {
+                // 无着可走，不必交给引擎
+                evals.add(CompletableFuture.completedFuture(new Eval(-MATE_SCORE, null, null, 0)));
+            } else {
+                Task t = new Task(fenCode, moves.subList(0, i), movetime);
+                evals.add(t.result);
+                queue.add(t);
+            }
+        }
+        if (closed) {
+            queue.clear();
+            return CompletableFuture.failedFuture(new CancellationException("分析已关闭"));
+        }
+
+        return CompletableFuture.allOf(evals.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<MoveAnalysis> list = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                Eval before = evals.get(i).join(), after = evals.get(i + 1).join();
+                MoveAnalysis ma = new MoveAnalysis(i + 1, moves.get(i));
+                ma.setBestMove(before.bestMove);
+                ma.setPv(before.pv);
+                ma.setDepth(before.depth);
+                if (before.valid() && after.valid()) {
+                    ma.setBestScore(before.score);
+                    ma.setPlayedScore(-after.score);
+                    ma.setLoss(Math.max(before.score + after.score, 0));
+                    ma.setBlunder(ma.getLoss() >= blunderThreshold && !moves.get(i).equals(before.bestMove));
+                }
+                list.add(ma);
+            }
+            return list;
+        });
+    }
+
+    /**
+     * 尚未开始分析的局面数
+     */
+    public int getPending() {
+        return queue.size();
+    }
+
+    public void close() {
+        closed = true;
+        List<Task> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Task t : pending) {
+            t.result.completeExceptionally(new CancellationException("分析已关闭"));
+        }
+        for (Worker w : workers) {
+            if (w.thread != null) {
+                w.thread.interrupt();
+            }
+            w.engine.close();
+        }
+    }
+
+    private static int toScore(ThinkData td) {
+        if (td.getMate() != null) {
+            int mate = td.getMate();
+            return mate > 0 ? MATE_SCORE - mate : -MATE_SCORE - mate;
+        }
+        return td.getScore() == null ? 0 : td.getScore();
+    }
+
+    /**
+     * 单个局面的分析结果，分数以走棋方为视角
+     */
+    private static class Eval {
+
+        private static final Eval FAILED = new Eval(0, null, null, null);
+
+        private final int score;
+
+        private final String bestMove;
+
+        private final List<String> pv;
+
+        private final Integer depth;
+
+        Eval(int score, String bestMove, List<String> pv, Integer depth) {
+            this.score = score;
+            this.bestMove = bestMove;
+            this.pv = pv;
+            this.depth = depth;
+        }
+
+        boolean valid() {
+            return this != FAILED;
+        }
+    }
+
+    private static class Task {
+
+        private final String fenCode;
+
+        private final List<String> moves;
+
+        private final long movetime;
+
+        private final CompletableFuture<Eval> result = new CompletableFuture<>();
+
+        Task(String fenCode, List<String> moves, long movetime) {
+            this.fenCode = fenCode;
+            this.moves = moves;
+            this.movetime = movetime;
+        }
+    }
+
+    /**
+     * 一个引擎进程，依次从队列中取局面分析
+     */
+    private class Worker implements EngineCallBack {
+
+        private final Engine engine;
+
+        private Thread thread;
+
+        Worker(EngineConfig ec, int threadNum, int hashSize) throws IOException {
+            engine = ec.getType() == Engine.Type.LOCAL ? new LocalEngine(ec, this) : new RemoteEngine(ec, this);
+            engine.setThreadNum(threadNum);
+            engine.setHashSize(hashSize);
+        }
+
+        void run() {
+            while (!closed) {
+                Task t;
+                try {
+                    t = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    t.result.complete(search(t));
+                } catch (InterruptedException e) {
+                    t.result.completeExceptionally(new CancellationException("分析已关闭"));
+                    return;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    t.result.complete(Eval.FAILED);
+                }
+            }
+        }
+
+        private Eval search(Task t) throws Exception {
+            engine.setAnalysisModel(Engine.AnalysisModel.FIXED_TIME, t.movetime);
+            SearchResult r;
+            try {
+                r = engine.analyze(t.fenCode, t.moves).get(t.movetime + SEARCH_GRACE, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 迟到的 bestmove 属于旧会话，会被丢弃
+                engine.stop();
+                return Eval.FAILED;
+            }
+            ThinkData td = r.getThinkData();
+            if (r.getBestMove() == null) {
+                return new Eval(-MATE_SCORE, null, null, 0);
+            }
+            if (td == null) {
+                return new Eval(0, r.getBestMove(), List.of(r.getBestMove()), 0);
+            }
+            return new Eval(toScore(td), r.getBestMove(), td.getDetail(), td.getDepth());
+        }
+
+        @Override
+        public void bestMove(String first, String second) {
+
+        }
+
+        @Override
+        public void thinkDetail(ThinkData td) {
+
+        }
+
+        @Override
+        public void showBookResults(List<BookData> list) {
+
+        }
+    }
+}
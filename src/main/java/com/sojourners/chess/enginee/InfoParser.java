@@ -0,0 +1,234 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.board.MoveGenerator;
+import com.sojourners.chess.board.Position;
+
+/**
+ * UCI/UCCI 引擎输出解析
+ * <p>
+ * 在原字符串上逐个扫描以空格分隔的词，不做 split、不创建子串、不装箱，结果写入调用方复用的
+ * {@link EngineInfo}。兼容两种协议的写法：UCI 的 score cp/mate、UCCI 的 score 数值与单独的 mate。
+ * 解析器保存扫描状态，每个读取线程使用自己的实例。
+ */
+public class InfoParser {
+
+    /**
+     * 不需要处理的行
+     */
+    public static final int NONE = 0;
+
+    /**
+     * info 行
+     */
+    public static final int INFO = 1;
+
+    /**
+     * bestmove/nobestmove 行
+     */
+    public static final int BESTMOVE = 2;
+
+    /**
+     * readyok 行
+     */
+    public static final int READY = 3;
+
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private CharSequence line;
+
+    private int length;
+
+    private int pos;
+
+    /**
+     * 当前词的起止位置
+     */
+    private int start, end;
+
+    /**
+     * 解析一行输出
+     *
+     * @return {@link #NONE}、{@link #INFO}、{@link #BESTMOVE} 或 {@link #READY}
+     */
+    public int parse(CharSequence line, EngineInfo info) {
+        this.line = line;
+        this.length = line.length();
+        this.pos = 0;
+        info.reset();
+        if (!next()) {
+            return NONE;
+        }
+        if (is("bestmove")) {
+            if (next()) {
+                info.bestMove = move();
+            }
+            if (next() && is("ponder") && next()) {
+                info.ponderMove = move();
+            }
+            // 无着可走时(如 bestmove (none))着法为 -1，仍然表示搜索结束
+            return BESTMOVE;
+        }
+        if (is("nobestmove")) {
+            return BESTMOVE;
+        }
+        if (is("readyok")) {
+            return READY;
+        }
+        if (!is("info")) {
+            return NONE;
+        }
+        while (next()) {
+            if (is("depth")) {
+                info.depth = (int) nextNumber(info.depth);
+            } else if (is("seldepth")) {
+                info.seldepth = (int) nextNumber(info.seldepth);
+            } else if (is("multipv")) {
+                info.multipv = (int) nextNumber(info.multipv);
+            } else if (is("score")) {
+                if (!next()) {
+                    break;
+                }
+                if (is("cp")) {
+                    long v = nextNumber(INVALID);
+                    if (v != INVALID) {
+                        info.score = (int) v;
+                        info.hasScore = true;
+                    }
+                } else if (is("mate")) {
+                    long v = nextNumber(INVALID);
+                    if (v != INVALID) {
+                        info.mate = (int) v;
+                        info.hasMate = true;
+                    }
+                } else {
+                    long v = number();
+                    if (v != INVALID) {
+                        info.score = (int) v;
+                        info.hasScore = true;
+                    }
+                }
+            } else if (is("mate")) {
+                long v = nextNumber(INVALID);
+                if (v != INVALID) {
+                    info.mate = (int) v;
+                    info.hasMate = true;
+                }
+            } else if (is("lowerbound")) {
+                info.lowerbound = true;
+            } else if (is("upperbound")) {
+                info.upperbound = true;
+            } else if (is("nodes")) {
+                long v = nextNumber(INVALID);
+                if (v != INVALID) {
+                    info.nodes = v;
+                    info.hasNodes = true;
+                }
+            } else if (is("nps")) {
+                long v = nextNumber(INVALID);
+                if (v != INVALID) {
+                    info.nps = v;
+                    info.hasNps = true;
+                }
+            } else if (is("time")) {
+                long v = nextNumber(INVALID);
+                if (v != INVALID) {
+                    info.time = v;
+                    info.hasTime = true;
+                }
+            } else if (is("hashfull")) {
+                info.hashfull = (int) nextNumber(info.hashfull);
+            } else if (is("pv")) {
+                while (info.pvLength < EngineInfo.MAX_PV && next()) {
+                    int m = move();
+                    if (m < 0) {
+                        break;
+                    }
+                    info.pv[info.pvLength++] = m;
+                }
+                break;
+            } else if (is("string")) {
+                // info string 为引擎附带的文字说明
+                return NONE;
+            }
+        }
+        return INFO;
+    }
+
+    /**
+     * 移到下一个词
+     */
+    private boolean next() {
+        while (pos < length && line.charAt(pos) == ' ') {
+            pos++;
+        }
+        if (pos >= length) {
+            return false;
+        }
+        start = pos;
+        while (pos < length && line.charAt(pos) != ' ') {
+            pos++;
+        }
+        end = pos;
+        return true;
+    }
+
+    private boolean is(String word) {
+        int n = word.length();
+        if (end - start != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (line.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long nextNumber(long defaultValue) {
+        if (!next()) {
+            return defaultValue;
+        }
+        long v = number();
+        return v == INVALID ? defaultValue : v;
+    }
+
+    /**
+     * 当前词的整数值，不是整数返回 INVALID
+     */
+    private long number() {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i >= end) {
+            return INVALID;
+        }
+        long v = 0;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * 当前词的着法编码(如 h2e2)，格式错误返回 -1
+     */
+    private int move() {
+        if (end - start != 4) {
+            return -1;
+        }
+        int c1 = line.charAt(start) - 'a', r1 = line.charAt(start + 1) - '0';
+        int c2 = line.charAt(start + 2) - 'a', r2 = line.charAt(start + 3) - '0';
+        if (c1 < 0 || c1 > 8 || c2 < 0 || c2 > 8 || r1 < 0 || r1 > 9 || r2 < 0 || r2 > 9) {
+            return -1;
+        }
+        return MoveGenerator.move(Position.square(9 - r1, c1), Position.square(9 - r2, c2));
+    }
+}
@@ -0,0 +1,49 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.model.ThinkData;
+
+/**
+ * 一次搜索的结果
+ */
+public class SearchResult {
+
+    /**
+     * 搜索会话编号
+     */
+    private final long session;
+
+    /**
+     * 最佳着法，无着可走时为 null
+     */
+    private final String bestMove;
+
+    private final String ponderMove;
+
+    /**
+     * 最后一条(第一主变的)思考细节，可能为 null
+     */
+    private final ThinkData thinkData;
+
+    public SearchResult(long session, String bestMove, String ponderMove, ThinkData thinkData) {
+        this.session = session;
+        this.bestMove = bestMove;
+        this.ponderMove = ponderMove;
+        this.thinkData = thinkData;
+    }
+
+    public long getSession() {
+        return session;
+    }
+
+    public String getBestMove() {
+        return bestMove;
+    }
+
+    public String getPonderMove() {
+        return ponderMove;
+    }
+
+    public ThinkData getThinkData() {
+        return thinkData;
+    }
+}
@@ -0,0 +1,156 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.model.ThinkData;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索会话编号
+ * <p>
+ * 每条 go 命令开始一个新会话，引擎对每个 go 按顺序输出一次 bestmove，读取线程据此判断收到的
+ * info/bestmove 属于哪次搜索。已被新搜索取代或被取消的搜索，其输出到达时直接丢弃，
+ * 重新开始搜索时不必等待旧搜索的 bestmove。
+ */
+class SearchTracker {
+
+    static class Session {
+
+        final long id;
+
+        /**
+         * 是否为尚未命中的后台思考
+         */
+        volatile boolean ponder;
+
+        /**
+         * 所属的分析请求，有了更新的请求后不再交出 info
+         */
+        volatile long request;
+
+        /**
+         * 最后一条第一主变的思考细节
+         */
+        volatile ThinkData last;
+
+        final CompletableFuture<SearchResult> future = new CompletableFuture<>();
+
+        Session(long id, boolean ponder) {
+            this.id = id;
+            this.ponder = ponder;
+        }
+    }
+
+    /**
+     * 分析请求编号(含查询开局库的阶段)
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * 最近一次 go 的编号
+     */
+    private final AtomicLong started = new AtomicLong();
+
+    /**
+     * 已收到的 bestmove 数，只由读取线程修改
+     */
+    private volatile long finished;
+
+    /**
+     * 编号不大于它的搜索已取消
+     */
+    private volatile long cancelled;
+
+    private volatile Session current;
+
+    /**
+     * 登记一次新的分析请求，之前的请求随之过期
+     */
+    long request() {
+        return requests.incrementAndGet();
+    }
+
+    boolean isLatest(long request) {
+        return request == requests.get();
+    }
+
+    /**
+     * 发送 go 之前调用，之前的会话立即以取消结束
+     */
+    Session start(boolean ponder) {
+        Session s = new Session(started.incrementAndGet(), ponder);
+        s.request = requests.get();
+        Session old = current;
+        current = s;
+        if (old != null) {
+            old.future.completeExceptionally(new CancellationException("搜索已被新的搜索取代"));
+        }
+        return s;
+    }
+
+    /**
+     * 后台思考命中，会话归属当前的分析请求
+     */
+    void hit(Session s) {
+        s.ponder = false;
+        s.request = requests.get();
+    }
+
+    /**
+     * 取消当前会话，它的 bestmove 到达时丢弃
+     */
+    void cancel() {
+        cancelled = started.get();
+        Session s = current;
+        if (s != null) {
+            s.future.completeExceptionally(new CancellationException("搜索已取消"));
+        }
+    }
+
+    Session current() {
+        return current;
+    }
+
+    /**
+     * 引擎是否有尚未输出 bestmove 的搜索
+     */
+    boolean isSearching() {
+        return finished < started.get();
+    }
+
+    /**
+     * 读取线程收到 info 时调用
+     *
+     * @return 所属的有效会话，过期返回 null
+     */
+    Session info() {
+        Session s = valid(finished + 1);
+        // 新请求还在查询开局库时，旧搜索的输出已不属于界面上的局面
+        return s != null && s.request == requests.get() ? s : null;
+    }
+
+    /**
+     * 读取线程收到 bestmove 时调用
+     *
+     * @return 所属的有效会话，过期返回 null
+     */
+    Session bestMove() {
+        if (!isSearching()) {
+            // 没有进行中的搜索，多余的 bestmove
+            return null;
+        }
+        Session s = valid(++finished);
+        if (s != null && s.request != requests.get()) {
+            // 新请求还在查询开局库，旧搜索的着法不能走到新局面上
+            s.future.completeExceptionally(new CancellationException("搜索已被新的分析请求取代"));
+            return null;
+        }
+        return s;
+    }
+
+    private Session valid(long id) {
+        Session s = current;
+        return s != null && s.id == id && id > cancelled ? s : null;
+    }
+}
@@ -11,6 +11,9 @@ import java.awt.event.InputEvent;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 
 public abstract class AbstractGraphLinker implements GraphLinker, Runnable {
@@ -28,7 +31,40 @@ public abstract class AbstractGraphLinker implements GraphLinker, Runnable {
      */
     private char[][] board2 = new char[10][9];
 
-    private char[][] board1 = new char[10][9];
+    /**
+     * 截图、识别线程，与比较(扫描线程)组成流水线，截下一帧的同时识别上一帧
+     */
+    private Thread captureThread, recognizeThread;
+
+    /**
+     * 阶段之间的交接队列，只保留最新的一帧
+     */
+    private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(1), results = new ArrayBlockingQueue<>(1);
+
+    /**
+     * 正在确认走棋动画结束，识别不用缓存，思考中也继续截图
+     */
+    private volatile boolean confirming;
+
+    private final LinkLatency latency = new LinkLatency();
+
+    /**
+     * 最近一次识别成功的棋盘(未翻转)，画面未变时直接沿用
+     */
+    private final char[][] lastBoard = new char[10][9];
+
+    private boolean lastBoardValid;
+
+    private final FrameChangeDetector changeDetector = new FrameChangeDetector();
+
+    private final SquareTracker squareTracker = new SquareTracker();
+
+    /**
+     * 连续逐格识别的帧数，达到 MAX_TRACKED 时全盘识别一次以免误差累积
+     */
+    private int trackedFrames;
+
+    private static final int MAX_TRACKED = 30;
 
     private OnnxModel aiModel;
 
@@ -97,82 +133,264 @@ public abstract class AbstractGraphLinker implements GraphLinker, Runnable {
                 sleep(1000);
                 continue;
             }
-            while (!Thread.currentThread().isInterrupted()) {
-                sleep(prop.getLinkScanTime());
-                if (!callBack.isThinking() && !pause) {
+            startPipeline();
+            try {
+                compareLoop();
+            } finally {
+                stopPipeline();
+            }
+        }
+    }
 
-                    if (!findChessBoard(board2)) {
-                        continue;
-                    }
+    /**
+     * 流水线中的一帧
+     */
+    static class Frame {
+        /**
+         * 截图，识别后释放
+         */
+        BufferedImage img;
+        /**
+         * 识别结果，比较线程中翻转
+         */
+        final char[][] board = new char[10][9];
+        boolean valid;
+        boolean reverse;
+        /**
+         * 识别时是否可以沿用上次结果
+         */
+        boolean allowCached;
+        /**
+         * 各阶段的时间(System.nanoTime)，previousCapture 为上一帧开始截图的时间，没有时为 0
+         */
+        long previousCapture, captureStart, captureEnd, recognizeStart, recognizeEnd;
+    }
 
-                    boolean isReverse;
-                    try {
-                        isReverse = reverse(board2);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        continue;
-                    }
+    /**
+     * 启动截图、识别线程，比较在扫描线程中进行
+     */
+    private void startPipeline() {
+        frames.clear();
+        results.clear();
+        confirming = false;
+        captureThread = Thread.ofPlatform().daemon().name("linker-capture").start(this::captureLoop);
+        recognizeThread = Thread.ofPlatform().daemon().name("linker-recognize").start(this::recognizeLoop);
+    }
 
-                    if (isSame(board2, callBack.getEngineBoard())) {
-                        continue;
-                    }
+    private void stopPipeline() {
+        captureThread.interrupt();
+        recognizeThread.interrupt();
+        // 识别线程用着模型和棋盘缓存，必须等它结束后才能重新寻找棋盘，停止连线时也要等
+        boolean interrupted = Thread.interrupted();
+        join(captureThread);
+        join(recognizeThread);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待线程结束，不响应中断
+     */
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 截图线程：按扫描间隔截图，识别线程还没取走的旧帧直接丢弃
+     */
+    private void captureLoop() {
+        long next = System.nanoTime(), previous = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            // 固定间隔，落后时不追赶
+            next = Math.max(next + TimeUnit.MILLISECONDS.toNanos(prop.getLinkScanTime()), System.nanoTime());
+            if (!confirming && (callBack.isThinking() || pause)) {
+                previous = 0;
+                continue;
+            }
+            Frame frame = new Frame();
+            frame.previousCapture = previous;
+            frame.captureStart = System.nanoTime();
+            frame.img = screenshot(false);
+            frame.captureEnd = System.nanoTime();
+            previous = frame.captureStart;
+            if (frame.img != null) {
+                offerLatest(frames, frame);
+            }
+        }
+    }
+
+    /**
+     * 识别线程：识别最新的一帧，比较线程还没取走的旧结果直接丢弃
+     */
+    private void recognizeLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Frame frame;
+            try {
+                frame = frames.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            frame.recognizeStart = System.nanoTime();
+            frame.allowCached = !confirming;
+            frame.valid = recognize(frame.img, frame.board, frame.allowCached);
+            frame.img = null;
+            frame.recognizeEnd = System.nanoTime();
+            offerLatest(results, frame);
+        }
+    }
+
+    private static void offerLatest(BlockingQueue<Frame> queue, Frame frame) {
+        while (!queue.offer(frame)) {
+            queue.poll();
+        }
+    }
+
+    /**
+     * 取下一个识别结果
+     *
+     * @param detected 是否只要不用缓存识别的结果
+     * @return 线程被中断时返回 null
+     */
+    private Frame nextResult(boolean detected) {
+        try {
+            Frame frame;
+            do {
+                frame = results.take();
+            } while (detected && frame.allowCached);
+            return frame;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
 
-                    Action action = compareBoard(board2, callBack.getEngineBoard(), isReverse, callBack.isWatchMode());
-                    if (prop.isLinkAnimation() && needConfirm(board2, callBack.getEngineBoard(), action)) {
-                        boolean f = false;
-                        do {
-                            char[][] tmp = board1;
-                            board1 = board2;
-                            board2 = tmp;
-
-                            if (!findChessBoard(board2)) {
-                                f = true;
-                                break;
-                            }
-
-                            try {
-                                isReverse = reverse(board2);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                                f = true;
-                                break;
-                            }
-                        } while (!isSame(board1, board2));
-
-                        if (f) continue;
-
-                        action = compareBoard(board2, callBack.getEngineBoard(), isReverse, callBack.isWatchMode());
+    /**
+     * 比较识别结果与引擎棋盘，同步走棋
+     */
+    private void compareLoop() {
+        // 第一次看到对方走棋的那一帧及其前一帧开始截图的时间
+        boolean seen = false;
+        long first = 0, before = 0;
+        // 这之前截的图可能还没反映刚同步的走棋
+        long settleAt = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            Frame frame = nextResult(false);
+            if (frame == null) {
+                return;
+            }
+            if (frame.captureStart - settleAt < 0 || !frame.valid || callBack.isThinking() || pause) {
+                continue;
+            }
+
+            try {
+                frame.reverse = reverse(frame.board);
+            } catch (Exception e) {
+                e.printStackTrace();
+                continue;
+            }
+
+            if (isSame(frame.board, callBack.getEngineBoard())) {
+                seen = false;
+                continue;
+            }
+            if (!seen) {
+                seen = true;
+                first = frame.captureStart;
+                before = frame.previousCapture == 0 ? first : frame.previousCapture;
+            }
+
+            Action action = compareBoard(frame.board, callBack.getEngineBoard(), frame.reverse, callBack.isWatchMode());
+            if (prop.isLinkAnimation() && needConfirm(frame.board, callBack.getEngineBoard(), action)) {
+                frame = confirm(frame);
+                if (frame == null) {
+                    continue;
+                }
+                action = compareBoard(frame.board, callBack.getEngineBoard(), frame.reverse, callBack.isWatchMode());
+            }
+
+            if (action != null) {
+                System.out.println("action " + action);
+                seen = false;
+                if (action.flag == 1) {
+                    callBack.linkerMove(action.x1, action.y1, action.x2, action.y2);
+                    latency.record(before, first, frame, System.nanoTime());
+
+                } else if (action.flag == 2) {
+                    if (frame.reverse) {
+                        action.y1 = 9 - action.y1;
+                        action.y2 = 9 - action.y2;
+                        action.x1 = 8 - action.x1;
+                        action.x2 = 8 - action.x2;
                     }
+                    autoClick(action.x1, action.y1, action.x2, action.y2);
 
-                    if (action != null) {
-                        System.out.println("action " + action);
-                        if (action.flag == 1) {
-                            callBack.linkerMove(action.x1, action.y1, action.x2, action.y2);
-
-                        } else if (action.flag == 2) {
-                            if (isReverse) {
-                                action.y1 = 9 - action.y1;
-                                action.y2 = 9 - action.y2;
-                                action.x1 = 8 - action.x1;
-                                action.x2 = 8 - action.x2;
-                            }
-                            autoClick(action.x1, action.y1, action.x2, action.y2);
-
-                        } else if (action.flag == 3) {
-                            break;
-                        }
-                        if (action.flag == 4) {
-                            count++;
-                            if (count > 9) {
-                                break;
-                            }
-                        } else {
-                            count = 0;
-                        }
+                } else if (action.flag == 3) {
+                    break;
+                }
+                if (action.flag == 1 || action.flag == 2) {
+                    // 引擎棋盘在界面线程中更新，与原来串行扫描一样留出一个扫描间隔
+                    settleAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(prop.getLinkScanTime());
+                }
+                if (action.flag == 4) {
+                    count++;
+                    if (count > 9) {
+                        break;
                     }
+                } else {
+                    count = 0;
+                }
+            }
+        }
+    }
 
+    /**
+     * 等待走棋动画结束，直到连续两帧全盘识别的结果相同
+     *
+     * @return 最后一帧，识别失败时返回 null
+     */
+    private Frame confirm(Frame frame) {
+        // 确认动画结束需要两次真正的识别，不用缓存
+        confirming = true;
+        try {
+            Frame last = frame;
+            while (true) {
+                Frame next = nextResult(true);
+                if (next == null || !next.valid) {
+                    return null;
+                }
+                try {
+                    next.reverse = reverse(next.board);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return null;
                 }
+                if (isSame(last.board, next.board)) {
+                    return next;
+                }
+                last = next;
             }
+        } finally {
+            confirming = false;
         }
     }
 
@@ -475,6 +693,10 @@ public abstract class AbstractGraphLinker implements GraphLinker, Runnable {
     boolean findBoardPosition() {
         BufferedImage img = screenshot(true);
         this.boardPos = this.aiModel.findBoardPosition(img);
+        // 棋盘区域可能变了，之前的画面和识别结果不再适用
+        this.lastBoardValid = false;
+        this.changeDetector.reset();
+        this.squareTracker.reset();
         return this.boardPos != null;
     }
 
@@ -501,10 +723,43 @@ public abstract class AbstractGraphLinker implements GraphLinker, Runnable {
     }
 
 
+    /**
+     * 截图识别棋盘
+     */
     private boolean findChessBoard(char[][] board) {
         // 截图
         BufferedImage img = screenshot(false);
+        if (img == null) {
+            return false;
+        }
+        return recognize(img, board, false);
+    }
+
+    /**
+     * 识别棋盘
+     *
+     * @param allowCached 是否可以沿用上次的识别结果(画面未变时直接沿用，变化不多时逐格识别)
+     */
+    private boolean recognize(BufferedImage img, char[][] board, boolean allowCached) {
+        boolean changed = changeDetector.update(img);
+        if (allowCached && lastBoardValid) {
+            if (!changed) {
+                changeDetector.count(FrameChangeDetector.SKIPPED);
+                copyBoard(lastBoard, board);
+                return true;
+            }
+            // 通常只有走棋的两格变化，逐格识别即可；连续未变后强制的一帧总是全盘识别
+            if (trackedFrames < MAX_TRACKED && !changeDetector.isForced() && squareTracker.track(img, lastBoard, board)) {
+                changeDetector.count(FrameChangeDetector.TRACKED);
+                trackedFrames++;
+                copyBoard(board, lastBoard);
+                return true;
+            }
+        }
+        changeDetector.count(FrameChangeDetector.DETECTED);
         // ai识别棋盘棋子
+        lastBoardValid = false;
+        trackedFrames = 0;
         if (!this.aiModel.findChessBoard(img, board)) {
             return false;
         }
@@ -516,10 +771,20 @@ public abstract class AbstractGraphLinker implements GraphLinker, Runnable {
                 }
                 System.out.println();
             }
+        } else {
+            copyBoard(board, lastBoard);
+            lastBoardValid = true;
+            squareTracker.learn(img, board);
         }
         return f;
     }
 
+    private void copyBoard(char[][] src, char[][] dst) {
+        for (int i = 0; i < 10; i++) {
+            System.arraycopy(src[i], 0, dst[i], 0, 9);
+        }
+    }
+
     private boolean reverse(char[][] board) throws Exception {
         // 是否翻转
         int rowRedKing = -1, rowBlackKing = -1;
@@ -0,0 +1,164 @@
+package com.sojourners.chess.linker;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 棋盘画面变化检测
+ * <p>
+ * 把棋盘截图分成 GRID × GRID 个格子，隔行隔列取样计算每格的平均亮度作为指纹，
+ * 与上一帧比较，任一格的差别超过阈值才认为画面变了，需要重新识别。
+ * 连续多帧未变时也报告一次变化，以防细微变化漏检。缓冲区复用，只在一个线程中使用。
+ */
+class FrameChangeDetector {
+
+    private static final int GRID = 16;
+
+    /**
+     * 取样间隔(像素)
+     */
+    private static final int STEP = 3;
+
+    /**
+     * 格子平均亮度(0~255)的差别超过它算变化
+     */
+    private static final int THRESHOLD = 3;
+
+    /**
+     * 连续未变的帧数达到它时强制识别一次
+     */
+    private static final int MAX_UNCHANGED = 50;
+
+    /**
+     * 每多少帧输出一次跳过比例
+     */
+    private static final int REPORT_FRAMES = 200;
+
+    private int[] current = new int[GRID * GRID], previous = new int[GRID * GRID];
+
+    private final int[] counts = new int[GRID * GRID];
+
+    private int[] row = new int[0];
+
+    private int width, height;
+
+    private boolean hasPrevious;
+
+    private int unchanged;
+
+    /**
+     * 最近一帧是否因连续未变而强制报告变化
+     */
+    private boolean forced;
+
+    /**
+     * 识别方式：画面未变沿用上次结果、逐格识别、全盘识别
+     */
+    static final int SKIPPED = 0, TRACKED = 1, DETECTED = 2;
+
+    private final long[] kinds = new long[3];
+
+    private long frames;
+
+    /**
+     * 计算新一帧的指纹并与上一帧比较
+     *
+     * @return 画面是否变化(第一帧总是变化)
+     */
+    boolean update(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        fingerprint(img, w, h);
+
+        boolean changed = !hasPrevious || w != width || h != height || differs();
+        forced = !changed && unchanged + 1 >= MAX_UNCHANGED;
+        changed |= forced;
+        int[] tmp = previous;
+        previous = current;
+        current = tmp;
+        width = w;
+        height = h;
+        hasPrevious = true;
+        unchanged = changed ? 0 : unchanged + 1;
+        return changed;
+    }
+
+    /**
+     * 最近一帧的变化是否为强制报告，此时应全盘识别
+     */
+    boolean isForced() {
+        return forced;
+    }
+
+    /**
+     * 记录本帧的识别方式，定期输出各方式的比例
+     *
+     * @param kind SKIPPED、TRACKED 或 DETECTED
+     */
+    void count(int kind) {
+        frames++;
+        kinds[kind]++;
+        if (frames % REPORT_FRAMES == 0) {
+            System.out.printf("画面未变跳过 %d 帧，逐格识别 %d 帧，全盘识别 %d 帧 (共 %d 帧，跳过 %.1f%%)%n",
+                    kinds[SKIPPED], kinds[TRACKED], kinds[DETECTED], frames, getSkipRate() * 100);
+        }
+    }
+
+    /**
+     * 棋盘区域改变后调用，下一帧总是视为变化
+     */
+    void reset() {
+        hasPrevious = false;
+        unchanged = 0;
+        forced = false;
+    }
+
+    long getFrames() {
+        return frames;
+    }
+
+    /**
+     * 某种识别方式的帧数
+     */
+    long getCount(int kind) {
+        return kinds[kind];
+    }
+
+    double getSkipRate() {
+        return frames == 0 ? 0 : (double) kinds[SKIPPED] / frames;
+    }
+
+    private void fingerprint(BufferedImage img, int w, int h) {
+        for (int i = 0; i < current.length; i++) {
+            current[i] = 0;
+            counts[i] = 0;
+        }
+        if (row.length < w) {
+            row = new int[w];
+        }
+        for (int y = STEP / 2; y < h; y += STEP) {
+            img.getRGB(0, y, w, 1, row, 0, w);
+            int base = y * GRID / h * GRID;
+            for (int x = STEP / 2; x < w; x += STEP) {
+                int rgb = row[x];
+                // 近似亮度 (2R + 5G + B) / 8
+                int lum = (((rgb >> 16) & 0xff) * 2 + ((rgb >> 8) & 0xff) * 5 + (rgb & 0xff)) >> 3;
+                int cell = base + x * GRID / w;
+                current[cell] += lum;
+                counts[cell]++;
+            }
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (counts[i] > 0) {
+                current[i] /= counts[i];
+            }
+        }
+    }
+
+    private boolean differs() {
+        for (int i = 0; i < current.length; i++) {
+            if (Math.abs(current[i] - previous[i]) > THRESHOLD) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
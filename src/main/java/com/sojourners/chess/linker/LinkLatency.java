@@ -0,0 +1,58 @@
+package com.sojourners.chess.linker;
+
+/**
+ * 连线走棋延迟统计
+ * <p>
+ * 统计从对方走棋出现在屏幕上到调用 linkerMove 的时间。走棋出现在第一次看到它的那帧截图之前、
+ * 上一帧截图之后，所以分别按这两帧开始截图的时间计算，作为实际延迟的下限和上限。
+ * 只在比较线程中使用。
+ */
+class LinkLatency {
+
+    private long count;
+
+    private long minSum, maxSum;
+
+    private long worst;
+
+    /**
+     * 记录一步的延迟并输出
+     *
+     * @param before 看到走棋的前一帧开始截图的时间，暂停截图后的第一帧不知道走棋何时出现，传入 first
+     * @param first  看到走棋的第一帧开始截图的时间
+     * @param frame  得出走法的一帧(动画确认后是确认的那一帧)
+     * @param now    调用 linkerMove 的时间
+     */
+    void record(long before, long first, AbstractGraphLinker.Frame frame, long now) {
+        long min = now - first, max = now - before;
+        count++;
+        minSum += min;
+        maxSum += max;
+        worst = Math.max(worst, max);
+        System.out.printf("走棋延迟 %.1f ~ %.1f ms (截图 %.1f ms，等待识别 %.1f ms，识别 %.1f ms，比较 %.1f ms)，平均 %.1f ~ %.1f ms，最长 %.1f ms，共 %d 步%n",
+                min / 1e6, max / 1e6,
+                (frame.captureEnd - frame.captureStart) / 1e6,
+                (frame.recognizeStart - frame.captureEnd) / 1e6,
+                (frame.recognizeEnd - frame.recognizeStart) / 1e6,
+                (now - frame.recognizeEnd) / 1e6,
+                minSum / 1e6 / count, maxSum / 1e6 / count, worst / 1e6, count);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * 平均延迟的下限(纳秒)
+     */
+    double getAverageMin() {
+        return count == 0 ? 0 : (double) minSum / count;
+    }
+
+    /**
+     * 平均延迟的上限(纳秒)
+     */
+    double getAverageMax() {
+        return count == 0 ? 0 : (double) maxSum / count;
+    }
+}
@@ -0,0 +1,295 @@
+package com.sojourners.chess.linker;
+
+import com.sojourners.chess.util.XiangqiUtils;
+import com.sojourners.chess.yolo.OnnxModel;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * 逐格识别
+ * <p>
+ * 全盘识别成功后，按棋盘网格记下每格中心区域的取样(PATCH × PATCH 个像素)，并以识别结果为标签
+ * 得到各兵种棋子的外观模板和各空格的外观。之后的画面只比较每格与上次的取样，找出外观变化的格子，
+ * 用模板逐格判断变成了什么，其余格子沿用上次结果；变化的格子太多、判断不明确或结果不合法时交回全盘识别。
+ * 流水线运行时只在识别线程(linker-recognize)中使用，寻找和初始化棋盘时在扫描线程中使用，此时流水线已停止。
+ */
+class SquareTracker {
+
+    /**
+     * 每格取样的边长(像素数)
+     */
+    private static final int PATCH = 16;
+
+    /**
+     * 取样区域占格子的比例，避开格子边缘的网格线和选中框
+     */
+    private static final double COVER = 0.7;
+
+    /**
+     * 平均每个颜色分量的差别超过它算格子外观变化
+     */
+    private static final int CHANGE_THRESHOLD = 12;
+
+    /**
+     * 与最接近模板的差别不超过它才接受
+     */
+    private static final int ACCEPT_THRESHOLD = 24;
+
+    /**
+     * 最接近与次接近模板的差别之比不超过它才算明确
+     */
+    private static final double RATIO = 0.67;
+
+    /**
+     * 超过这么多格变化时全盘识别
+     */
+    private static final int MAX_CHANGED = 4;
+
+    private static final int SQUARES = 90;
+
+    private static final int SAMPLES = PATCH * PATCH;
+
+    /**
+     * 各格上次的取样(0xRRGGBB)
+     */
+    private final int[][] reference = new int[SQUARES][SAMPLES];
+
+    /**
+     * 本帧各格的取样
+     */
+    private final int[][] current = new int[SQUARES][SAMPLES];
+
+    /**
+     * 各兵种的外观模板，下标同 {@link OnnxModel#labels}，未见过的为 null
+     */
+    private final int[][] pieces = new int[OnnxModel.labels.length][];
+
+    /**
+     * 各格为空时的外观，未见过的为 null
+     */
+    private final int[][] empties = new int[SQUARES][];
+
+    /**
+     * 所有空格外观的平均，用于没见过空着的格子
+     */
+    private int[] empty;
+
+    private final int[] changed = new int[SQUARES];
+
+    /**
+     * 变化格子上原来的内容
+     */
+    private final char[] candidates = new char[MAX_CHANGED];
+
+    private final long[][] sums = new long[OnnxModel.labels.length][SAMPLES * 3];
+
+    private final int[] counts = new int[OnnxModel.labels.length];
+
+    private boolean ready;
+
+    /**
+     * 全盘识别成功后调用，以识别结果更新各格外观和模板
+     *
+     * @param board 与截图方向一致(未翻转)的局面
+     */
+    void learn(BufferedImage img, char[][] board) {
+        sample(img, reference);
+        for (int k = 0; k < sums.length; k++) {
+            Arrays.fill(sums[k], 0);
+            counts[k] = 0;
+        }
+        long[] emptySum = new long[SAMPLES * 3];
+        int emptyCount = 0;
+        for (int s = 0; s < SQUARES; s++) {
+            char c = board[s / 9][s % 9];
+            if (c == ' ') {
+                empties[s] = reference[s].clone();
+                accumulate(emptySum, reference[s]);
+                emptyCount++;
+            } else {
+                int k = labelIndex(c);
+                if (k >= 0) {
+                    accumulate(sums[k], reference[s]);
+                    counts[k]++;
+                }
+            }
+        }
+        // 本次没有出现的兵种(已被吃)保留之前的模板
+        for (int k = 0; k < pieces.length; k++) {
+            if (counts[k] > 0) {
+                pieces[k] = average(sums[k], counts[k]);
+            }
+        }
+        if (emptyCount > 0) {
+            empty = average(emptySum, emptyCount);
+        }
+        ready = true;
+    }
+
+    /**
+     * 全盘识别前或棋盘区域改变后调用
+     */
+    void reset() {
+        ready = false;
+        Arrays.fill(empties, null);
+        Arrays.fill(pieces, null);
+        empty = null;
+    }
+
+    /**
+     * 只识别外观变化的格子
+     *
+     * @param last  上次的局面(未翻转)
+     * @param board 输出新局面
+     * @return 是否成功，失败时需要全盘识别
+     */
+    boolean track(BufferedImage img, char[][] last, char[][] board) {
+        if (!ready) {
+            return false;
+        }
+        sample(img, current);
+        int n = 0;
+        for (int s = 0; s < SQUARES; s++) {
+            if (distance(current[s], reference[s]) > CHANGE_THRESHOLD) {
+                if (n == MAX_CHANGED) {
+                    return false;
+                }
+                changed[n++] = s;
+            }
+        }
+        // 画面变了却找不到变化的格子，交给全盘识别
+        if (n == 0) {
+            return false;
+        }
+
+        // 走一步棋时，出现在变化格子上的棋子只能是原来就在这些格子上的，同色棋子之间不必区分
+        for (int i = 0; i < n; i++) {
+            candidates[i] = last[changed[i] / 9][changed[i] % 9];
+        }
+
+        for (int i = 0; i < 10; i++) {
+            System.arraycopy(last[i], 0, board[i], 0, 9);
+        }
+        for (int i = 0; i < n; i++) {
+            int s = changed[i];
+            char c = classify(s, n);
+            if (c == 0) {
+                return false;
+            }
+            board[s / 9][s % 9] = c;
+        }
+        if (!XiangqiUtils.validateChessBoard(board)) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            int s = changed[i];
+            System.arraycopy(current[s], 0, reference[s], 0, SAMPLES);
+        }
+        return true;
+    }
+
+    /**
+     * 用模板判断一格的内容
+     *
+     * @param n 候选棋子数(candidates 的前 n 个)
+     * @return 棋子、空格 ' '，不明确时返回 0
+     */
+    private char classify(int s, int n) {
+        int[] patch = current[s];
+        int best = Integer.MAX_VALUE, second = Integer.MAX_VALUE;
+        char label = 0;
+        int[] e = empties[s] != null ? empties[s] : empty;
+        if (e != null) {
+            best = distance(patch, e);
+            label = ' ';
+        }
+        for (int k = 0; k < pieces.length; k++) {
+            if (pieces[k] == null || !isCandidate(OnnxModel.labels[k], n)) {
+                continue;
+            }
+            int d = distance(patch, pieces[k]);
+            if (d < best) {
+                second = best;
+                best = d;
+                label = OnnxModel.labels[k];
+            } else if (d < second) {
+                second = d;
+            }
+        }
+        if (best > ACCEPT_THRESHOLD || best > second * RATIO) {
+            return 0;
+        }
+        return label;
+    }
+
+    private boolean isCandidate(char c, int n) {
+        for (int i = 0; i < n; i++) {
+            if (candidates[i] == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按棋盘网格取各格中心区域的像素
+     */
+    private void sample(BufferedImage img, int[][] out) {
+        int w = img.getWidth(), h = img.getHeight();
+        double pw = w / (8 + OnnxModel.PADDING * 2), ph = h / (9 + OnnxModel.PADDING * 2);
+        double sw = pw * COVER / PATCH, sh = ph * COVER / PATCH;
+        for (int s = 0; s < SQUARES; s++) {
+            double cx = pw * (OnnxModel.PADDING + s % 9), cy = ph * (OnnxModel.PADDING + s / 9);
+            double x0 = cx - pw * COVER / 2 + sw / 2, y0 = cy - ph * COVER / 2 + sh / 2;
+            int[] p = out[s];
+            for (int i = 0; i < PATCH; i++) {
+                int y = Math.min(Math.max((int) (y0 + i * sh), 0), h - 1);
+                for (int j = 0; j < PATCH; j++) {
+                    int x = Math.min(Math.max((int) (x0 + j * sw), 0), w - 1);
+                    p[i * PATCH + j] = img.getRGB(x, y) & 0xffffff;
+                }
+            }
+        }
+    }
+
+    /**
+     * 平均每个颜色分量的差别
+     */
+    private static int distance(int[] a, int[] b) {
+        int sum = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            int p = a[i], q = b[i];
+            sum += Math.abs(((p >> 16) & 0xff) - ((q >> 16) & 0xff))
+                    + Math.abs(((p >> 8) & 0xff) - ((q >> 8) & 0xff))
+                    + Math.abs((p & 0xff) - (q & 0xff));
+        }
+        return sum / (SAMPLES * 3);
+    }
+
+    private static void accumulate(long[] sum, int[] patch) {
+        for (int i = 0; i < SAMPLES; i++) {
+            int p = patch[i];
+            sum[i * 3] += (p >> 16) & 0xff;
+            sum[i * 3 + 1] += (p >> 8) & 0xff;
+            sum[i * 3 + 2] += p & 0xff;
+        }
+    }
+
+    private static int[] average(long[] sum, int count) {
+        int[] patch = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            patch[i] = (int) (sum[i * 3] / count) << 16 | (int) (sum[i * 3 + 1] / count) << 8 | (int) (sum[i * 3 + 2] / count);
+        }
+        return patch;
+    }
+
+    private static int labelIndex(char c) {
+        for (int k = 0; k < OnnxModel.labels.length; k++) {
+            if (OnnxModel.labels[k] == c) {
+                return k;
+            }
+        }
+        return -1;
+    }
+}
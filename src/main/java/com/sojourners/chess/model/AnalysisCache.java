@@ -0,0 +1,97 @@
+package com.sojourners.chess.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分析结果缓存
+ * <p>
+ * 分析模式下按局面键值保存各主变最深的一条思考数据(着法、分数、深度、节点数)，
+ * 来回浏览棋谱时可以立即显示，已分析到目标深度的局面不必重新搜索。按最近使用淘汰，可在任意线程调用。
+ */
+public class AnalysisCache {
+
+    /**
+     * 默认目标深度
+     */
+    public static final int DEFAULT_TARGET_DEPTH = 20;
+
+    private final Map<Long, Entry> cache;
+
+    public AnalysisCache(int capacity) {
+        this.cache = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 记录一条思考数据，比已有的浅时忽略
+     *
+     * @param key     局面键值
+     * @param multiPV 本次分析的主变数
+     * @param td      未生成显示内容的原始数据
+     */
+    public synchronized void put(long key, int multiPV, ThinkData td) {
+        int i = td.getMultipv() - 1;
+        if (i < 0 || i >= multiPV || td.getDepth() == null) {
+            return;
+        }
+        Entry e = cache.computeIfAbsent(key, k -> new Entry(multiPV));
+        if (e.lines.length < multiPV) {
+            e.lines = Arrays.copyOf(e.lines, multiPV);
+        }
+        ThinkData old = e.lines[i];
+        if (old == null || td.getDepth() >= old.getDepth()) {
+            e.lines[i] = td;
+            if (i == 0) {
+                e.multiPV = multiPV;
+            }
+        }
+    }
+
+    /**
+     * 取局面的分析结果
+     *
+     * @param multiPV 需要的主变数
+     * @return 按主变序号排列的原始数据副本，没有或主变不全时返回 null
+     */
+    public synchronized List<ThinkData> get(long key, int multiPV) {
+        Entry e = cache.get(key);
+        if (e == null || e.multiPV < multiPV) {
+            return null;
+        }
+        List<ThinkData> list = new ArrayList<>(multiPV);
+        for (int i = 0; i < multiPV; i++) {
+            if (e.lines[i] == null) {
+                return null;
+            }
+            list.add(e.lines[i].copy());
+        }
+        return list;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private static class Entry {
+
+        private ThinkData[] lines;
+
+        /**
+         * 第一主变所属分析的主变数
+         */
+        private int multiPV;
+
+        Entry(int multiPV) {
+            this.lines = new ThinkData[multiPV];
+            this.multiPV = multiPV;
+        }
+    }
+}
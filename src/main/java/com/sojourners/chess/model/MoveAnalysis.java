@@ -0,0 +1,126 @@
+package com.sojourners.chess.model;
+
+import java.util.List;
+
+/**
+ * 整局分析中一步着法的结果
+ * <p>
+ * 分数均以走这步棋的一方为视角。
+ */
+public class MoveAnalysis {
+
+    /**
+     * 第几步(从 1 开始)
+     */
+    private int ply;
+
+    private String move;
+
+    /**
+     * 走棋前局面引擎给出的最佳着法
+     */
+    private String bestMove;
+
+    private List<String> pv;
+
+    private Integer depth;
+
+    /**
+     * 走最佳着法的分数
+     */
+    private int bestScore;
+
+    /**
+     * 实际着法的分数
+     */
+    private int playedScore;
+
+    /**
+     * 实际着法比最佳着法损失的分数
+     */
+    private int loss;
+
+    private boolean blunder;
+
+    public MoveAnalysis(int ply, String move) {
+        this.ply = ply;
+        this.move = move;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public void setPly(int ply) {
+        this.ply = ply;
+    }
+
+    public String getMove() {
+        return move;
+    }
+
+    public void setMove(String move) {
+        this.move = move;
+    }
+
+    public String getBestMove() {
+        return bestMove;
+    }
+
+    public void setBestMove(String bestMove) {
+        this.bestMove = bestMove;
+    }
+
+    public List<String> getPv() {
+        return pv;
+    }
+
+    public void setPv(List<String> pv) {
+        this.pv = pv;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    public void setBestScore(int bestScore) {
+        this.bestScore = bestScore;
+    }
+
+    public int getPlayedScore() {
+        return playedScore;
+    }
+
+    public void setPlayedScore(int playedScore) {
+        this.playedScore = playedScore;
+    }
+
+    public int getLoss() {
+        return loss;
+    }
+
+    public void setLoss(int loss) {
+        this.loss = loss;
+    }
+
+    public boolean isBlunder() {
+        return blunder;
+    }
+
+    public void setBlunder(boolean blunder) {
+        this.blunder = blunder;
+    }
+
+    @Override
+    public String toString() {
+        return ply + ". " + move + " best=" + bestMove + " (" + bestScore + "/" + playedScore + ", -" + loss + ")" + (blunder ? " ??" : "");
+    }
+}
@@ -1,6 +1,7 @@
 package com.sojourners.chess.model;
 
-import com.sojourners.chess.board.ChessBoard;
+import com.sojourners.chess.board.BoardSnapshot;
+import com.sojourners.chess.board.PvTranslator;
 
 import java.util.List;
 
@@ -11,12 +12,19 @@ public class ThinkData {
 
     private Integer depth;
 
+    /**
+     * 多主变模式下的序号(从 1 开始)
+     */
+    private int multipv = 1;
+
     private Integer score;
 
     private Integer mate;
 
     private Long nps;
 
+    private Long nodes;
+
     private Long time;
 
     private List<String> detail;
@@ -31,9 +39,35 @@ public class ThinkData {
 
     }
 
-    public void generate(boolean redGo, boolean isReverse, ChessBoard board) {
+    /**
+     * 复制引擎给出的原始数据(不含显示内容)
+     */
+    public ThinkData copy() {
+        ThinkData td = new ThinkData();
+        td.depth = depth;
+        td.multipv = multipv;
+        td.score = score;
+        td.mate = mate;
+        td.nps = nps;
+        td.nodes = nodes;
+        td.time = time;
+        td.detail = detail;
+        return td;
+    }
+
+    /**
+     * 生成显示内容，在引擎线程调用
+     *
+     * @param snapshot 引擎开始思考时的局面
+     * @param showRank 是否显示主变序号(多主变模式)
+     */
+    public void generate(boolean isReverse, BoardSnapshot snapshot, boolean showRank) {
+        boolean redGo = snapshot.isRedGo();
         // 生成title
         StringBuilder sb = new StringBuilder();
+        if (showRank) {
+            sb.append("主变").append(multipv).append("  ");
+        }
         sb.append("深度: ").append(depth).append("  ");
         boolean f = false;
         if (score == null) {
@@ -52,7 +86,7 @@ public class ThinkData {
         sb.append("时间: ").append(String.format("%.1fs", time / 1000D));
         title = sb.toString();
         // 生成body
-        body = board.translate(detail);
+        body = PvTranslator.translate(snapshot, detail);
         // 是否有效（处理分析模式下null数据）
         isValid = !body.contains("null");
     }
@@ -89,6 +123,14 @@ public class ThinkData {
         this.mate = mate;
     }
 
+    public int getMultipv() {
+        return multipv;
+    }
+
+    public void setMultipv(int multipv) {
+        this.multipv = multipv;
+    }
+
     public Integer getDepth() {
         return depth;
     }
@@ -113,6 +155,14 @@ public class ThinkData {
         this.nps = nps;
     }
 
+    public Long getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(Long nodes) {
+        this.nodes = nodes;
+    }
+
     public Long getTime() {
         return time;
     }
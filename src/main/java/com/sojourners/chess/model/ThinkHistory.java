@@ -0,0 +1,73 @@
+package com.sojourners.chess.model;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 思考细节历史列表
+ * <p>
+ * 定长环形缓冲区，最新的在下标 0；满了以后插入新数据同时丢弃最旧的，插入和丢弃都不移动元素。
+ * 只支持 {@link #push} 和 {@link #clear} 两种修改。
+ */
+public class ThinkHistory extends ObservableListBase<ThinkData> {
+
+    private final ThinkData[] items;
+
+    /**
+     * 最新一条所在的位置
+     */
+    private int head;
+
+    private int size;
+
+    public ThinkHistory(int capacity) {
+        this.items = new ThinkData[capacity];
+    }
+
+    @Override
+    public ThinkData get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return items[(head + index) % items.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 在最前面插入
+     */
+    public void push(ThinkData td) {
+        beginChange();
+        if (size == items.length) {
+            ThinkData removed = items[(head + size - 1) % items.length];
+            size--;
+            nextRemove(size, removed);
+        }
+        head = (head - 1 + items.length) % items.length;
+        items[head] = td;
+        size++;
+        nextAdd(0, 1);
+        endChange();
+    }
+
+    @Override
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        beginChange();
+        List<ThinkData> removed = new ArrayList<>(this);
+        Arrays.fill(items, null);
+        head = 0;
+        size = 0;
+        nextRemove(0, removed);
+        endChange();
+    }
+}
@@ -0,0 +1,229 @@
+package com.sojourners.chess.openbook;
+
+import com.sojourners.chess.model.BookData;
+import com.sojourners.chess.util.ZobristUtils;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * SQLite 开局库公共查询层
+ * <p>
+ * 查询语句在打开时预编译并复用，键值按原生类型绑定，保证 vkey 上的索引可以命中；
+ * 打开时不改动库文件，没有 vkey 索引时只给出提示，由用户在本地库管理中建立。
+ */
+public abstract class AbstractSqliteOpenBook implements OpenBook {
+
+    /**
+     * 批量查询每条语句的键值个数(SQLite 默认参数上限 999)
+     */
+    private static final int BATCH_SIZE = 400;
+
+    protected Connection connection;
+
+    protected String name;
+
+    private PreparedStatement queryStatement;
+
+    protected AbstractSqliteOpenBook(String bookPath) throws ClassNotFoundException, SQLException {
+        Class.forName("org.sqlite.JDBC");
+        this.connection = DriverManager.getConnection("jdbc:sqlite:" + bookPath);
+        this.name = new File(bookPath).getName();
+
+        if (!hasKeyIndex()) {
+            System.out.println(name + " 没有vkey索引，查询较慢，可在本地库管理中建立索引");
+        }
+        this.queryStatement = connection.prepareStatement("SELECT vmove, vscore, vwin, vdraw, vlost, vmemo FROM "
+                + getTableName() + " WHERE vkey = ? AND vvalid = 1");
+    }
+
+    /**
+     * 库表名
+     */
+    protected abstract String getTableName();
+
+    /**
+     * 绑定键值参数，按库中 vkey 的存储类型绑定
+     */
+    protected void bindKey(PreparedStatement ps, int index, long zobrist) throws SQLException {
+        ps.setLong(index, zobrist);
+    }
+
+    /**
+     * 读取结果集中的键值，与 {@link #bindKey} 对应
+     */
+    protected long readKey(ResultSet rs, int index) throws SQLException {
+        return rs.getLong(index);
+    }
+
+    /**
+     * 是否有可用于 vkey 等值查询的索引(第一列为 vkey)
+     */
+    public synchronized boolean hasKeyIndex() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            List<String> indexes = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA index_list(" + getTableName() + ")")) {
+                while (rs.next()) {
+                    indexes.add(rs.getString("name"));
+                }
+            }
+            for (String index : indexes) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA index_info(\"" + index + "\")")) {
+                    if (rs.next() && "vkey".equalsIgnoreCase(rs.getString("name"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 在库文件中建立 vkey 索引，会写入库文件，大库耗时较长，不要在界面线程中调用
+     *
+     * @return 是否新建了索引，已有索引时返回 false
+     */
+    public synchronized boolean createKeyIndex() throws SQLException {
+        if (hasKeyIndex()) {
+            return false;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            long s = System.currentTimeMillis();
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + getTableName() + "_vkey ON " + getTableName() + "(vkey)");
+            System.out.println(name + " 创建vkey索引 " + (System.currentTimeMillis() - s) + "ms");
+        }
+        return true;
+    }
+
+    @Override
+    public List<BookData> get(char[][] board, boolean redGo) {
+        return get(ZobristUtils.getZobristFromBoard(board, redGo, false),
+                ZobristUtils.getZobristFromBoard(board, redGo, true));
+    }
+
+    @Override
+    public List<BookData> get(long zobrist, long mirrorZobrist) {
+        List<BookData> results = get(zobrist, false);
+        results.addAll(get(mirrorZobrist, true));
+        return results;
+    }
+
+    private synchronized List<BookData> get(long zobrist, boolean leftRightSwap) {
+        List<BookData> results = new ArrayList<>();
+        try {
+            bindKey(queryStatement, 1, zobrist);
+            try (ResultSet rs = queryStatement.executeQuery()) {
+                while (rs.next()) {
+                    results.add(readBookData(rs, leftRightSwap));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    @Override
+    public Map<Long, List<BookData>> get(long[] zobrists, long[] mirrorZobrists) {
+        Map<Long, List<BookData>> results = new LinkedHashMap<>();
+        // 镜像键值 -> 原局面键值
+        Map<Long, Long> mirrorOf = new HashMap<>();
+        Set<Long> keys = new LinkedHashSet<>();
+        for (int i = 0; i < zobrists.length; i++) {
+            results.putIfAbsent(zobrists[i], new ArrayList<>());
+            mirrorOf.put(mirrorZobrists[i], zobrists[i]);
+            keys.add(zobrists[i]);
+            keys.add(mirrorZobrists[i]);
+        }
+
+        Long[] all = keys.toArray(new Long[0]);
+        for (int from = 0; from < all.length; from += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, all.length - from);
+            StringBuilder sql = new StringBuilder("SELECT vkey, vmove, vscore, vwin, vdraw, vlost, vmemo FROM ")
+                    .append(getTableName()).append(" WHERE vvalid = 1 AND vkey IN (");
+            for (int i = 0; i < n; i++) {
+                sql.append(i == 0 ? "?" : ",?");
+            }
+            sql.append(")");
+
+            synchronized (this) {
+                try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < n; i++) {
+                        bindKey(ps, i + 1, all[from + i]);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long key = readKey(rs, 1);
+                            List<BookData> list = results.get(key);
+                            if (list != null) {
+                                list.add(readBookData(rs, false));
+                            }
+                            Long origin = mirrorOf.get(key);
+                            if (origin != null) {
+                                results.get(origin).add(readBookData(rs, true));
+                            }
+                        }
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return results;
+    }
+
+    protected BookData readBookData(ResultSet rs, boolean leftRightSwap) throws SQLException {
+        BookData bd = new BookData();
+        bd.setScore(rs.getInt("vscore"));
+        bd.setWinNum(rs.getInt("vwin"));
+        bd.setDrawNum(rs.getInt("vdraw"));
+        bd.setLoseNum(rs.getInt("vlost"));
+        int winRate = (int) (10000 * (bd.getWinNum() + bd.getDrawNum() / 2.0d) / (bd.getWinNum() + bd.getDrawNum() + bd.getLoseNum()));
+        bd.setWinRate(winRate / 100d);
+        bd.setNote(rs.getString("vmemo"));
+        int vmove = rs.getInt("vmove");
+        bd.setMove(ZobristUtils.getMoveFromVmove(vmove, leftRightSwap));
+
+        bd.setSource(this.name);
+        return bd;
+    }
+
+    /**
+     * 记录遍历回调(用于格式转换)
+     */
+    interface RecordConsumer {
+        void accept(long key, int vmove, int score, int winNum, int drawNum, int loseNum);
+    }
+
+    /**
+     * 遍历全部有效记录
+     */
+    synchronized void forEach(RecordConsumer consumer) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT vkey, vmove, vscore, vwin, vdraw, vlost FROM "
+                     + getTableName() + " WHERE vvalid = 1")) {
+            while (rs.next()) {
+                consumer.accept(readKey(rs, 1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6));
+            }
+        }
+    }
+
+    @Override
+    public List<BookData> get(String fenCode, boolean onlyFinalPhase) {
+        return null;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (this.queryStatement != null) {
+                this.queryStatement.close();
+            }
+            this.connection.close();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
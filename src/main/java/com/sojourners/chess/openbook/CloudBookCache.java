@@ -0,0 +1,209 @@
+package com.sojourners.chess.openbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 云库查询结果缓存
+ * <p>
+ * 以规范化的 FEN(局面 + 行棋方)为键，内存中按 LRU 保留最近的结果，同时追加写入磁盘文件，
+ * 重启后重新加载；超过有效期的结果视为未命中。文件中同一局面以最后一条为准，
+ * 加载时若文件行数远多于有效条目则重写文件。
+ */
+public class CloudBookCache {
+
+    /**
+     * 内存中最多保留的局面数
+     */
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * 结果有效期(毫秒)
+     */
+    private static final long DEFAULT_TTL = 7L * 24 * 3600 * 1000;
+
+    private static class Entry {
+        final String response;
+        final long time;
+
+        Entry(String response, long time) {
+            this.response = response;
+            this.time = time;
+        }
+    }
+
+    private final int capacity;
+
+    private final long ttl;
+
+    private final File file;
+
+    private final LinkedHashMap<String, Entry> cache;
+
+    private Writer writer;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public CloudBookCache(File file) {
+        this(file, DEFAULT_CAPACITY, DEFAULT_TTL);
+    }
+
+    /**
+     * @param file     缓存文件，为 null 时只使用内存
+     * @param capacity 内存中最多保留的局面数
+     * @param ttl      有效期(毫秒)
+     */
+    public CloudBookCache(File file, int capacity, long ttl) {
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.file = file;
+        this.cache = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CloudBookCache.this.capacity;
+            }
+        };
+        load();
+    }
+
+    /**
+     * 去掉 FEN 中的回合计数等信息，只保留局面和行棋方
+     */
+    public static String normalize(String fenCode) {
+        String[] parts = fenCode.trim().split("\\s+");
+        return parts.length > 1 ? parts[0] + " " + parts[1] : parts[0];
+    }
+
+    /**
+     * 查询缓存，未命中或已过期返回 null
+     */
+    public synchronized String get(String fenCode) {
+        String key = normalize(fenCode);
+        Entry e = cache.get(key);
+        if (e != null && System.currentTimeMillis() - e.time <= ttl) {
+            hits.incrementAndGet();
+            return e.response;
+        }
+        if (e != null) {
+            cache.remove(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void put(String fenCode, String response) {
+        String key = normalize(fenCode);
+        long time = System.currentTimeMillis();
+        cache.put(key, new Entry(response, time));
+        if (writer != null) {
+            try {
+                writeLine(writer, key, response, time);
+                writer.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 丢弃缓存的结果(只从内存中删除，文件中的旧记录读入后同样会被丢弃)
+     */
+    public synchronized void remove(String fenCode) {
+        cache.remove(normalize(fenCode));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CloudBookCache{size=" + size() + ", hits=" + hits.get() + ", misses=" + misses.get() + '}';
+    }
+
+    /**
+     * 每行：时间戳 \t FEN \t 云库返回内容
+     */
+    private void load() {
+        if (file == null) {
+            return;
+        }
+        int lines = 0;
+        if (file.exists()) {
+            long now = System.currentTimeMillis();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines++;
+                    String[] items = line.split("\t", 3);
+                    if (items.length < 3) {
+                        continue;
+                    }
+                    try {
+                        long time = Long.parseLong(items[0]);
+                        if (now - time <= ttl) {
+                            cache.put(items[1], new Entry(items[2], time));
+                        }
+                    } catch (NumberFormatException e) {
+                        // 忽略损坏的行
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        try {
+            if (lines > 2 * cache.size() + 1024) {
+                compact();
+            }
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Entry> e : cache.entrySet()) {
+                writeLine(w, e.getKey(), e.getValue().response, e.getValue().time);
+            }
+        }
+        if (!file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("重写云库缓存失败: " + file);
+        }
+    }
+
+    private static void writeLine(Writer w, String key, String response, long time) throws IOException {
+        w.write(Long.toString(time));
+        w.write('\t');
+        w.write(key);
+        w.write('\t');
+        w.write(response.replace('\n', ' ').replace('\r', ' '));
+        w.write('\n');
+    }
+}
@@ -3,69 +3,161 @@ package com.sojourners.chess.openbook;
 import com.sojourners.chess.config.Properties;
 import com.sojourners.chess.model.BookData;
 import com.sojourners.chess.util.HttpUtils;
+import com.sojourners.chess.util.PathUtils;
 import com.sojourners.chess.util.StringUtils;
 
+import java.io.File;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class CloudOpenBook implements OpenBook {
 
     private final static String URL = "http://www.chessdb.cn/chessdb.php";
 
+    private final String url;
+
+    private final CloudBookCache cache;
+
+    public CloudOpenBook() {
+        this(URL, new CloudBookCache(new File(PathUtils.getJarPath() + "cloudbook.cache")));
+    }
+
+    /**
+     * @param url   云库查询地址
+     * @param cache 结果缓存
+     */
+    public CloudOpenBook(String url, CloudBookCache cache) {
+        this.url = url;
+        this.cache = cache;
+    }
+
+    public CloudBookCache getCache() {
+        return cache;
+    }
+
     @Override
     public List<BookData> get(char[][] board, boolean redGo) {
         return null;
     }
 
+    @Override
+    public List<BookData> get(long zobrist, long mirrorZobrist) {
+        return null;
+    }
+
     @Override
     public List<BookData> get(String fenCode, boolean onlyFinalPhase) {
-        List<BookData> list = new ArrayList<>();
         try {
-            String content = "action=queryall&board=" + URLEncoder.encode(fenCode, "UTF-8");
-            String result = HttpUtils.sendByGet(URL, content, Properties.getInstance().getCloudBookTimeout());
-            System.out.println(result);
+            return getAsync(fenCode, onlyFinalPhase).join();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-            if (StringUtils.isNotEmpty(result) && result.contains("move")) {
+    /**
+     * 异步查询云库并按规则排序，取消返回的 future 会中断网络请求
+     */
+    public CompletableFuture<List<BookData>> queryAsync(String fenCode, boolean onlyFinalPhase, MoveRule mr) {
+        CompletableFuture<List<BookData>> request = getAsync(fenCode, onlyFinalPhase);
+        return cancelWith(request, request.thenApply(list -> {
+            sort(list, mr);
+            return list;
+        }));
+    }
 
-                String[] datas = result.split("\\|");
-                for (String data : datas) {
-
-                    BookData bd = new BookData();
-                    bd.setSource("云库");
-                    String[] items = data.split(",");
-                    boolean finalPhase = false;
-                    for (String item : items) {
-                        String[] kvs = item.split(":");
-                        if ("move".equals(kvs[0])) {
-                            bd.setMove(kvs[1]);
-                        } else if ("score".equals(kvs[0])) {
-                            bd.setScore(Integer.parseInt(kvs[1]));
-                        } else if ("winrate".equals(kvs[0])) {
-                            bd.setWinRate(Double.parseDouble(kvs[1]));
-                        } else if ("note".equals(kvs[0])) {
-                            bd.setNote(kvs[1]);
-                            if (kvs[1].contains("W") || kvs[1].contains("D") || kvs[1].contains("L")) {
-                                finalPhase = true;
-                            }
-                        }
-                    }
-                    if (!(onlyFinalPhase || Properties.getInstance().getOnlyCloudFinalPhase()) || finalPhase) {
-                        list.add(bd);
-                    }
-                }
+    /**
+     * 异步查询云库，命中缓存时直接完成
+     */
+    public CompletableFuture<List<BookData>> getAsync(String fenCode, boolean onlyFinalPhase) {
+        String cached = cache.get(fenCode);
+        if (cached != null) {
+            List<BookData> list = tryParse(cached, onlyFinalPhase);
+            if (list != null) {
+                return CompletableFuture.completedFuture(list);
+            }
+            // 缓存中的结果无法解析，丢弃后重新查询
+            cache.remove(fenCode);
+        }
+        String content = "action=queryall&board=" + URLEncoder.encode(fenCode, StandardCharsets.UTF_8);
+        CompletableFuture<String> request = HttpUtils.sendByGetAsync(url, content, Properties.getInstance().getCloudBookTimeout());
+        return cancelWith(request, request.thenApply(result -> {
+            List<BookData> list = tryParse(result, onlyFinalPhase);
+            if (list == null) {
+                return new ArrayList<>();
             }
+            // 只缓存能解析且有着法的结果，未收录的局面以后可能入库
+            if (StringUtils.isNotEmpty(result) && result.contains("move")) {
+                cache.put(fenCode, result);
+            }
+            return list;
+        }));
+    }
 
+    /**
+     * 解析云库结果，格式错误时返回 null
+     */
+    private List<BookData> tryParse(String result, boolean onlyFinalPhase) {
+        try {
+            return parse(result, onlyFinalPhase);
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
+    }
+
+    /**
+     * 取消 derived 时一并取消 source
+     */
+    private static <T> CompletableFuture<T> cancelWith(CompletableFuture<?> source, CompletableFuture<T> derived) {
+        derived.whenComplete((r, e) -> {
+            if (derived.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return derived;
+    }
 
+    private List<BookData> parse(String result, boolean onlyFinalPhase) {
+        List<BookData> list = new ArrayList<>();
+        if (StringUtils.isNotEmpty(result) && result.contains("move")) {
+
+            String[] datas = result.split("\\|");
+            for (String data : datas) {
+
+                BookData bd = new BookData();
+                bd.setSource("云库");
+                String[] items = data.split(",");
+                boolean finalPhase = false;
+                for (String item : items) {
+                    String[] kvs = item.split(":");
+                    if ("move".equals(kvs[0])) {
+                        bd.setMove(kvs[1]);
+                    } else if ("score".equals(kvs[0])) {
+                        bd.setScore(Integer.parseInt(kvs[1]));
+                    } else if ("winrate".equals(kvs[0])) {
+                        bd.setWinRate(Double.parseDouble(kvs[1]));
+                    } else if ("note".equals(kvs[0])) {
+                        bd.setNote(kvs[1]);
+                        if (kvs[1].contains("W") || kvs[1].contains("D") || kvs[1].contains("L")) {
+                            finalPhase = true;
+                        }
+                    }
+                }
+                if (!(onlyFinalPhase || Properties.getInstance().getOnlyCloudFinalPhase()) || finalPhase) {
+                    list.add(bd);
+                }
+            }
+        }
         return list;
     }
 
     @Override
     public void close() {
-
+        cache.close();
     }
 
 }
\ No newline at end of file
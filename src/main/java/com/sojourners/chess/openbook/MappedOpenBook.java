@@ -0,0 +1,326 @@
+package com.sojourners.chess.openbook;
+
+import com.sojourners.chess.model.BookData;
+import com.sojourners.chess.util.ZobristUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 内存映射的二进制开局库(.mbk)
+ * <p>
+ * 文件格式(大端)：16 字节文件头(魔数、版本、记录数、记录长度)，之后是按键值升序排列的定长记录：
+ * 键值 long、着法 int(与 vmove 编码相同)、分数 int、胜/和/负局数 int，共 28 字节。
+ * 单个映射区最大 2GB，文件按 CHUNK_RECORDS 条记录分段映射，记录不跨段，按 long 下标定位。
+ * 查询时对映射区做二分查找，只使用绝对位置读取，不加锁，多个线程可以同时查询。
+ * 注释(vmemo)不保存。由 .obk/.pfBook 转换得到：
+ * <pre>
+ * java -cp ... com.sojourners.chess.openbook.MappedOpenBook 源库 [目标.mbk]
+ * </pre>
+ */
+public class MappedOpenBook implements OpenBook {
+
+    public static final String SUFFIX = ".mbk";
+
+    private static final int MAGIC = 0x5851424B;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int RECORD_SIZE = 28;
+
+    /**
+     * 每段映射区的记录数(约 900MB)
+     */
+    private static final int CHUNK_RECORDS = 1 << 25;
+
+    /**
+     * 转换时每批在内存中排序的记录数，超过后写入临时文件，最后归并
+     */
+    private static final int RUN_RECORDS = 1 << 20;
+
+    private final MappedByteBuffer[] buffers;
+
+    private final long count;
+
+    private final String name;
+
+    public MappedOpenBook(String bookPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(bookPath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("开局库文件大小不支持: " + bookPath);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(12) != RECORD_SIZE || header.getInt(8) < 0) {
+                throw new IOException("开局库格式错误: " + bookPath);
+            }
+            this.count = header.getInt(8);
+            if (HEADER_SIZE + count * RECORD_SIZE > size) {
+                throw new IOException("开局库文件不完整: " + bookPath);
+            }
+            this.buffers = new MappedByteBuffer[(int) ((count + CHUNK_RECORDS - 1) / CHUNK_RECORDS)];
+            for (int i = 0; i < buffers.length; i++) {
+                long start = (long) i * CHUNK_RECORDS;
+                long n = Math.min(CHUNK_RECORDS, count - start);
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start * RECORD_SIZE, n * RECORD_SIZE);
+            }
+        }
+        this.name = new File(bookPath).getName();
+    }
+
+    @Override
+    public List<BookData> get(char[][] board, boolean redGo) {
+        return get(ZobristUtils.getZobristFromBoard(board, redGo, false),
+                ZobristUtils.getZobristFromBoard(board, redGo, true));
+    }
+
+    @Override
+    public List<BookData> get(long zobrist, long mirrorZobrist) {
+        List<BookData> results = new ArrayList<>();
+        get(zobrist, false, results);
+        get(mirrorZobrist, true, results);
+        return results;
+    }
+
+    private void get(long zobrist, boolean leftRightSwap, List<BookData> results) {
+        for (long i = lowerBound(zobrist); i < count && keyAt(i) == zobrist; i++) {
+            MappedByteBuffer buffer = buffers[(int) (i / CHUNK_RECORDS)];
+            int offset = (int) (i % CHUNK_RECORDS) * RECORD_SIZE;
+            BookData bd = new BookData();
+            bd.setMove(ZobristUtils.getMoveFromVmove(buffer.getInt(offset + 8), leftRightSwap));
+            bd.setScore(buffer.getInt(offset + 12));
+            bd.setWinNum(buffer.getInt(offset + 16));
+            bd.setDrawNum(buffer.getInt(offset + 20));
+            bd.setLoseNum(buffer.getInt(offset + 24));
+            int winRate = (int) (10000 * (bd.getWinNum() + bd.getDrawNum() / 2.0d) / (bd.getWinNum() + bd.getDrawNum() + bd.getLoseNum()));
+            bd.setWinRate(winRate / 100d);
+            bd.setSource(this.name);
+            results.add(bd);
+        }
+    }
+
+    private long keyAt(long i) {
+        return buffers[(int) (i / CHUNK_RECORDS)].getLong((int) (i % CHUNK_RECORDS) * RECORD_SIZE);
+    }
+
+    /**
+     * 第一个键值不小于 zobrist 的记录下标
+     */
+    private long lowerBound(long zobrist) {
+        long lo = 0, hi = count;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (keyAt(mid) < zobrist) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public List<BookData> get(String fenCode, boolean onlyFinalPhase) {
+        return null;
+    }
+
+    /**
+     * 映射区在对象回收时释放
+     */
+    @Override
+    public void close() {
+    }
+
+    private record Entry(long key, int vmove, int score, int winNum, int drawNum, int loseNum) {
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(key);
+            out.writeInt(vmove);
+            out.writeInt(score);
+            out.writeInt(winNum);
+            out.writeInt(drawNum);
+            out.writeInt(loseNum);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            return new Entry(in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        }
+    }
+
+    /**
+     * 把源库记录按 RUN_RECORDS 条一批排序后写入临时文件
+     */
+    private static class RunWriter implements AbstractSqliteOpenBook.RecordConsumer {
+
+        private final Path dir;
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        private final List<Path> runs = new ArrayList<>();
+
+        private final List<Long> sizes = new ArrayList<>();
+
+        private RunWriter(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public void accept(long key, int vmove, int score, int winNum, int drawNum, int loseNum) {
+            entries.add(new Entry(key, vmove, score, winNum, drawNum, loseNum));
+            if (entries.size() >= RUN_RECORDS) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (entries.isEmpty()) {
+                return;
+            }
+            entries.sort(Comparator.comparingLong(Entry::key));
+            Path run = Files.createTempFile(dir, "mbk", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                for (Entry e : entries) {
+                    e.write(out);
+                }
+            }
+            sizes.add((long) entries.size());
+            entries.clear();
+        }
+
+        void delete() {
+            for (Path run : runs) {
+                try {
+                    Files.deleteIfExists(run);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 归并时一个临时文件的读取位置
+     */
+    private static class RunReader {
+
+        private final DataInputStream in;
+
+        private long remaining;
+
+        private Entry current;
+
+        private RunReader(Path run, long size) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+            this.remaining = size;
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                in.close();
+                return false;
+            }
+            current = Entry.read(in);
+            remaining--;
+            return true;
+        }
+    }
+
+    /**
+     * 将 .obk/.pfBook 转换为 .mbk
+     * <p>
+     * 源库记录分批排序写入目标目录下的临时文件，再多路归并写出，内存中最多保留 RUN_RECORDS 条记录。
+     *
+     * @return 记录数
+     */
+    public static long convert(String sourcePath, String targetPath) throws Exception {
+        AbstractSqliteOpenBook source;
+        if (sourcePath.endsWith(".obk")) {
+            source = new BhOpenBook(sourcePath);
+        } else if (sourcePath.endsWith(".pfBook")) {
+            source = new PfOpenBook(sourcePath);
+        } else {
+            throw new IllegalArgumentException("不支持的开局库: " + sourcePath);
+        }
+        Path dir = Path.of(targetPath).toAbsolutePath().getParent();
+        RunWriter writer = new RunWriter(dir);
+        try {
+            try {
+                source.forEach(writer);
+            } finally {
+                source.close();
+            }
+            writer.flush();
+            return merge(writer, targetPath);
+        } finally {
+            writer.delete();
+        }
+    }
+
+    private static long merge(RunWriter writer, String targetPath) throws IOException {
+        long total = 0;
+        for (long size : writer.sizes) {
+            total += size;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("记录数过多: " + total);
+        }
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, writer.runs.size()), Comparator.comparingLong(r -> r.current.key()));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(targetPath), 1 << 16))) {
+            for (int i = 0; i < writer.runs.size(); i++) {
+                RunReader reader = new RunReader(writer.runs.get(i), writer.sizes.get(i));
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt((int) total);
+            out.writeInt(RECORD_SIZE);
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                reader.current.write(out);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.in.close();
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("用法: MappedOpenBook 源库(.obk/.pfBook) [目标" + SUFFIX + "]");
+            return;
+        }
+        String target = args.length > 1 ? args[1] : args[0].substring(0, args[0].lastIndexOf('.')) + SUFFIX;
+        long s = System.currentTimeMillis();
+        long n = convert(args[0], target);
+        System.out.println(target + " " + n + "条记录 " + (System.currentTimeMillis() - s) + "ms");
+    }
+}
@@ -3,15 +3,35 @@ package com.sojourners.chess.openbook;
 import com.sojourners.chess.model.BookData;
 
 import java.security.SecureRandom;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
 
 public interface OpenBook {
 
     List<BookData> get(char[][] board, boolean redGo);
 
+    /**
+     * 按局面键值查询
+     *
+     * @param zobrist       局面键值(含行棋方)
+     * @param mirrorZobrist 左右镜像局面的键值
+     */
+    List<BookData> get(long zobrist, long mirrorZobrist);
+
+    /**
+     * 批量按局面键值查询(例如一盘棋的全部局面)
+     *
+     * @param zobrists       局面键值
+     * @param mirrorZobrists 对应的左右镜像局面键值
+     * @return 局面键值 -> 库招，每个请求的键值都有对应项(无库招时为空列表)
+     */
+    default Map<Long, List<BookData>> get(long[] zobrists, long[] mirrorZobrists) {
+        Map<Long, List<BookData>> results = new LinkedHashMap<>();
+        for (int i = 0; i < zobrists.length; i++) {
+            results.put(zobrists[i], get(zobrists[i], mirrorZobrists[i]));
+        }
+        return results;
+    }
+
     List<BookData> get(String fenCode, boolean onlyFinalPhase);
 
     void close();
@@ -22,6 +42,12 @@ public interface OpenBook {
         return list;
     }
 
+    default List<BookData> query(long zobrist, long mirrorZobrist, MoveRule mr) {
+        List<BookData> list = get(zobrist, mirrorZobrist);
+        sort(list, mr);
+        return list;
+    }
+
     default List<BookData> query(String fenCode, boolean onlyFinalPhase, MoveRule mr) {
         List<BookData> list = get(fenCode, onlyFinalPhase);
         sort(list, mr);
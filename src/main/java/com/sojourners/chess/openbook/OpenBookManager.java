@@ -1,17 +1,64 @@
 package com.sojourners.chess.openbook;
 
 import com.sojourners.chess.board.ChessBoard;
+import com.sojourners.chess.board.MoveGenerator;
+import com.sojourners.chess.board.Position;
 import com.sojourners.chess.config.Properties;
 import com.sojourners.chess.model.BookData;
+import com.sojourners.chess.util.ZobristUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class OpenBookManager {
 
     private volatile static OpenBookManager instance;
 
-    private OpenBook cloudOpenBook;
+    /**
+     * 未设置云库超时时的查询期限(毫秒)
+     */
+    private static final long DEFAULT_CLOUD_DEADLINE = 3000;
+
+    /**
+     * 本地库结果缓存的局面数
+     */
+    private static final int LOCAL_CACHE_SIZE = 4096;
+
+    /**
+     * 预取时最多查询云库的应着数
+     */
+    private static final int CLOUD_PREFETCH_NUM = 8;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private CloudOpenBook cloudOpenBook;
+
+    /**
+     * 正在进行的云库请求
+     */
+    private final AtomicReference<CompletableFuture<?>> cloudRequest = new AtomicReference<>();
+
+    /**
+     * 预取的云库请求
+     */
+    private final AtomicReference<List<CompletableFuture<?>>> prefetchRequests = new AtomicReference<>();
+
+    /**
+     * 本地库结果缓存：局面键值 -> 各本地库的结果(顺序与本地库列表一致)
+     */
+    private final Map<Long, List<List<BookData>>> localCache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, List<List<BookData>>> eldest) {
+            return size() > LOCAL_CACHE_SIZE;
+        }
+    };
     private List<OpenBook> localOpenBooks;
     Properties prop;
 
@@ -32,12 +79,14 @@ public class OpenBookManager {
     public synchronized void setLocalOpenBooks() {
         close();
         localOpenBooks.clear();
+        synchronized (localCache) {
+            localCache.clear();
+        }
         for (String path : prop.getOpenBookList()) {
             try {
-                if (path.endsWith(".obk")) {
-                    localOpenBooks.add(new BhOpenBook(path));
-                } else if (path.endsWith(".pfBook")) {
-                    localOpenBooks.add(new PfOpenBook(path));
+                OpenBook ob = open(path);
+                if (ob != null) {
+                    localOpenBooks.add(ob);
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -45,18 +94,107 @@ public class OpenBookManager {
         }
     }
 
-    public synchronized List<BookData> queryBook(char[][] b, boolean redGo, boolean offManual) {
+    /**
+     * 按扩展名打开本地库，不支持的格式返回 null
+     */
+    private static OpenBook open(String path) throws Exception {
+        if (path.endsWith(".obk")) {
+            return new BhOpenBook(path);
+        } else if (path.endsWith(".pfBook")) {
+            return new PfOpenBook(path);
+        } else if (path.endsWith(MappedOpenBook.SUFFIX)) {
+            return new MappedOpenBook(path);
+        }
+        return null;
+    }
+
+    /**
+     * 为 SQLite 开局库建立 vkey 索引，会写入库文件，大库耗时较长，不要在界面线程中调用
+     *
+     * @return 是否新建了索引，已有索引或不是 SQLite 库时返回 false
+     */
+    public static boolean createKeyIndex(String path) throws Exception {
+        OpenBook ob = open(path);
+        if (ob == null) {
+            return false;
+        }
+        try {
+            return ob instanceof AbstractSqliteOpenBook book && book.createKeyIndex();
+        } finally {
+            ob.close();
+        }
+    }
 
-        List<BookData> cloudResults = new ArrayList<>();
+    public List<BookData> queryBook(char[][] b, boolean redGo, boolean offManual) {
+        return queryBook(b, ZobristUtils.getZobristFromBoard(b, redGo, false),
+                ZobristUtils.getZobristFromBoard(b, redGo, true), redGo, offManual);
+    }
+
+    /**
+     * 查询库招
+     * <p>
+     * 云库与各本地库在虚拟线程上并发查询，耗时取决于最慢的来源而不是各来源之和；
+     * 云库超过期限按无结果处理，不影响本地库结果。本地库默认等待查询完成，设置了 localBookTimeout 时超时同样按无结果处理。
+     * 丢弃的来源都会输出日志。
+     * 新的查询会取消仍在进行的云库请求，被取代的查询抛出 CancellationException。
+     *
+     * @param b             棋盘(用于生成云库FEN)
+     * @param zobrist       局面键值(含行棋方)
+     * @param mirrorZobrist 左右镜像局面的键值
+     * @param redGo         行棋方
+     * @param offManual     是否已脱谱(只查云库残局)
+     * @return
+     */
+    public List<BookData> queryBook(char[][] b, long zobrist, long mirrorZobrist, boolean redGo, boolean offManual) {
+        MoveRule moveRule = prop.getMoveRule();
+
+        CompletableFuture<List<BookData>> cloudRequest = null, cloudFuture = null;
         if (prop.getUseCloudBook()) {
             String fenCode = ChessBoard.fenCode(b, redGo);
-            cloudResults.addAll(cloudOpenBook.query(fenCode, offManual, prop.getMoveRule()));
+            cloudRequest = cloudOpenBook.queryAsync(fenCode, offManual, moveRule);
+            CompletableFuture<?> previous = this.cloudRequest.getAndSet(cloudRequest);
+            if (previous != null) {
+                previous.cancel(true);
+            }
+            cloudFuture = withDeadline(cloudRequest, getCloudDeadline(), "云库");
         }
 
         List<BookData> localResults = new ArrayList<>();
-        if (!offManual) {
-            for (OpenBook ob : this.localOpenBooks) {
-                localResults.addAll(ob.query(b, redGo, prop.getMoveRule()));
+        List<List<BookData>> cached = offManual ? null : getLocalCache(zobrist);
+        List<OpenBook> books = getLocalOpenBooks();
+        List<CompletableFuture<List<BookData>>> localRequests = new ArrayList<>();
+        List<CompletableFuture<List<BookData>>> localFutures = new ArrayList<>();
+        if (!offManual && cached == null) {
+            long deadline = getLocalDeadline();
+            for (int i = 0; i < books.size(); i++) {
+                OpenBook ob = books.get(i);
+                CompletableFuture<List<BookData>> request = CompletableFuture.supplyAsync(() -> ob.get(zobrist, mirrorZobrist), executor);
+                localRequests.add(request);
+                localFutures.add(withDeadline(request, deadline, "本地库" + (i + 1)));
+            }
+        }
+
+        List<BookData> cloudResults = cloudFuture == null ? new ArrayList<>() : new ArrayList<>(cloudFuture.join());
+        if (cached == null) {
+            cached = new ArrayList<>();
+            for (CompletableFuture<List<BookData>> f : localFutures) {
+                cached.add(f.join());
+            }
+            // 全部本地库都按时返回才缓存
+            if (!offManual && localRequests.stream().allMatch(r -> r.isDone() && !r.isCompletedExceptionally())) {
+                putLocalCache(zobrist, cached);
+            }
+        }
+        for (int i = 0; i < cached.size() && i < books.size(); i++) {
+            List<BookData> list = new ArrayList<>(cached.get(i));
+            books.get(i).sort(list, moveRule);
+            localResults.addAll(list);
+        }
+        if (cloudRequest != null) {
+            // 超过期限的请求不再等待
+            cloudRequest.cancel(true);
+            if (!this.cloudRequest.compareAndSet(cloudRequest, null)) {
+                throw new CancellationException("库招查询已被新的查询取代");
             }
         }
 
@@ -69,6 +207,163 @@ public class OpenBookManager {
         }
     }
 
+    /**
+     * 取消正在进行的云库请求(局面已改变)
+     */
+    public void cancelCloudQuery() {
+        CompletableFuture<?> request = this.cloudRequest.getAndSet(null);
+        if (request != null) {
+            request.cancel(true);
+        }
+    }
+
+    /**
+     * 超过期限、出错或被取消时返回空结果，超时和出错时输出日志
+     *
+     * @param deadline 期限(毫秒)，不大于 0 时一直等待
+     * @param source   来源名称，用于日志
+     */
+    private CompletableFuture<List<BookData>> withDeadline(CompletableFuture<List<BookData>> future, long deadline, String source) {
+        CompletableFuture<List<BookData>> f = deadline > 0 ? future.copy().orTimeout(deadline, TimeUnit.MILLISECONDS) : future;
+        return f
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        System.out.println(source + "查询超过" + deadline + "ms，结果丢弃");
+                    } else if (!(cause instanceof CancellationException)) {
+                        System.out.println(source + "查询出错，结果丢弃");
+                        cause.printStackTrace();
+                    }
+                    return null;
+                })
+                .thenApply(list -> list == null ? Collections.<BookData>emptyList() : list);
+    }
+
+    /**
+     * 云库期限：请求超时为 cloudBookTimeout，另留读取响应的余量
+     */
+    private long getCloudDeadline() {
+        Integer timeout = prop.getCloudBookTimeout();
+        return timeout == null || timeout <= 0 ? DEFAULT_CLOUD_DEADLINE : timeout + 500L;
+    }
+
+    /**
+     * 本地库期限：未设置时等待查询完成
+     */
+    private long getLocalDeadline() {
+        Integer timeout = prop.getLocalBookTimeout();
+        return timeout == null || timeout <= 0 ? 0 : timeout;
+    }
+
+    private synchronized List<OpenBook> getLocalOpenBooks() {
+        return new ArrayList<>(localOpenBooks);
+    }
+
+    private List<List<BookData>> getLocalCache(long zobrist) {
+        synchronized (localCache) {
+            return localCache.get(zobrist);
+        }
+    }
+
+    private void putLocalCache(long zobrist, List<List<BookData>> results) {
+        synchronized (localCache) {
+            localCache.put(zobrist, results);
+        }
+    }
+
+    /**
+     * 预取对方各应着之后局面的库招，在对方思考期间预热本地库结果缓存和云库缓存。
+     * 本地库对全部合法应着做一次批量查询；云库只查询引擎预测的应着和前若干个应着。
+     *
+     * @param position  当前局面(对方走棋)
+     * @param redGo     当前行棋方(对方)
+     * @param pvMove    引擎预测的对方应着，可为 null
+     * @param offManual 应着之后是否已脱谱
+     */
+    public void prefetch(Position position, boolean redGo, String pvMove, boolean offManual) {
+        Position pos = new Position();
+        pos.copyFrom(position);
+        Thread.startVirtualThread(() -> {
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int n = MoveGenerator.generateLegal(pos, redGo, moves, 0);
+            // 预测着法排在最前
+            int pv = MoveGenerator.fromUci(pvMove);
+            for (int i = 1; i < n; i++) {
+                if (moves[i] == pv) {
+                    moves[i] = moves[0];
+                    moves[0] = pv;
+                    break;
+                }
+            }
+
+            boolean useCloudBook = prop.getUseCloudBook();
+            long[] zobrists = new long[n], mirrorZobrists = new long[n];
+            String[] fenCodes = new String[n];
+            char[][] b = new char[10][9];
+            for (int i = 0; i < n; i++) {
+                int from = MoveGenerator.from(moves[i]), to = MoveGenerator.to(moves[i]);
+                int captured = pos.makeMove(from, to);
+                zobrists[i] = pos.getZobrist(!redGo);
+                mirrorZobrists[i] = pos.getMirrorZobrist(!redGo);
+                if (useCloudBook && i < CLOUD_PREFETCH_NUM) {
+                    pos.copyTo(b);
+                    fenCodes[i] = ChessBoard.fenCode(b, !redGo);
+                }
+                pos.unmakeMove(from, to, captured);
+            }
+
+            List<CompletableFuture<?>> requests = new ArrayList<>();
+            if (useCloudBook) {
+                for (int i = 0; i < n && i < CLOUD_PREFETCH_NUM; i++) {
+                    requests.add(cloudOpenBook.getAsync(fenCodes[i], offManual));
+                }
+            }
+            List<CompletableFuture<?>> previous = prefetchRequests.getAndSet(requests);
+            if (previous != null) {
+                previous.forEach(f -> f.cancel(true));
+            }
+
+            if (!offManual) {
+                cacheLocalBooks(zobrists, mirrorZobrists);
+            }
+        });
+    }
+
+    /**
+     * 一次批量查询棋谱中全部局面的本地库招并放入本地库结果缓存，之后浏览棋谱时各局面不必再逐个查询
+     *
+     * @param fenCode  起始局面
+     * @param moveList 着法
+     */
+    public void prefetchRecord(String fenCode, List<String> moveList) {
+        List<String> moves = new ArrayList<>(moveList);
+        Thread.startVirtualThread(() -> {
+            long[][] keys = ZobristUtils.getZobristFromRecord(fenCode, moves);
+            cacheLocalBooks(keys[0], keys[1]);
+        });
+    }
+
+    /**
+     * 每本本地库对这些局面做一次批量查询，结果放入本地库结果缓存
+     */
+    private void cacheLocalBooks(long[] zobrists, long[] mirrorZobrists) {
+        List<OpenBook> books = getLocalOpenBooks();
+        if (books.isEmpty()) {
+            return;
+        }
+        List<Map<Long, List<BookData>>> results = new ArrayList<>();
+        for (OpenBook ob : books) {
+            results.add(ob.get(zobrists, mirrorZobrists));
+        }
+        for (long zobrist : zobrists) {
+            List<List<BookData>> cached = new ArrayList<>();
+            for (Map<Long, List<BookData>> r : results) {
+                cached.add(r.getOrDefault(zobrist, Collections.emptyList()));
+            }
+            putLocalCache(zobrist, cached);
+        }
+    }
+
     public static OpenBookManager getInstance() {
         if (instance == null) {
             synchronized (OpenBookManager.class) {
@@ -2,6 +2,7 @@ package com.sojourners.chess.util;
 
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.TextArea;
 
 import java.util.Optional;
 
@@ -28,6 +29,17 @@ public class DialogUtils {
         alert.showAndWait();
     }
 
+    public static void showTextDialog(String title, String header, String text) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(header);
+        TextArea area = new TextArea(text);
+        area.setEditable(false);
+        area.setPrefSize(420, 360);
+        alert.getDialogPane().setContent(area);
+        alert.showAndWait();
+    }
+
     public static boolean showConfirmDialog(String title, String content) {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle(title);
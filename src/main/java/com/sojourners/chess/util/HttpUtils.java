@@ -2,9 +2,17 @@ package com.sojourners.chess.util;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 public class HttpUtils {
 
@@ -123,6 +131,15 @@ public class HttpUtils {
         }
     }
 
+    /**
+     * 共享的 HTTP/1.1 客户端，连接池复用 keep-alive 连接
+     */
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
     /**
      * HTTP GET方法
      *
@@ -132,22 +149,47 @@ public class HttpUtils {
      */
     public static String sendByGet(String url, String content, int timeout) {
         try {
-            URL u = new URL(url + "?" + content);
-            HttpURLConnection con = (HttpURLConnection) u.openConnection();
-            con.setUseCaches(false);
-            con.setConnectTimeout(timeout);
-            con.setReadTimeout(timeout);
-            StringBuffer result = new StringBuffer();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while (null != (line = reader.readLine())) {
-                    result.append(line);
-                }
-            }
-            return result.toString();
+            return sendByGetAsync(url, content, timeout).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 异步 HTTP GET，响应内容去掉换行；非 200 响应以 IOException 异常完成。
+     * 取消返回的 future 会同时中断底层请求。
+     *
+     * @param url     请求URL
+     * @param content get参数 key1=val1&key2=val2&key3=val3
+     * @param timeout 超时(毫秒)
+     * @return
+     */
+    public static CompletableFuture<String> sendByGetAsync(String url, String content, int timeout) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "?" + content))
+                .timeout(Duration.ofMillis(timeout))
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<String>> exchange = CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        // 客户端返回的 future 取消语义特殊，这里转为普通的 CompletableFuture
+        CompletableFuture<String> result = new CompletableFuture<>();
+        exchange.whenComplete((response, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                result.completeExceptionally(new IOException("HTTP " + response.statusCode() + ": " + url));
+            } else {
+                result.complete(response.body().lines().collect(Collectors.joining()));
+            }
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+}
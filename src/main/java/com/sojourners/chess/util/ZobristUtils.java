@@ -1,6 +1,11 @@
 package com.sojourners.chess.util;
 
+import com.sojourners.chess.board.MoveGenerator;
+import com.sojourners.chess.board.Position;
+
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ZobristUtils {
@@ -14,16 +19,41 @@ public class ZobristUtils {
         return coordMap.get(first) + coordMap.get(second);
     }
 
+    /**
+     * 计算棋谱中每个局面的键值(第 i 项为走完前 i 步后的局面)，遇到不合法的着法时只算到它之前
+     *
+     * @param fenCode  起始局面
+     * @param moveList 着法
+     * @return {局面键值数组, 镜像局面键值数组}
+     */
+    public static long[][] getZobristFromRecord(String fenCode, List<String> moveList) {
+        Position pos = new Position();
+        pos.loadFen(fenCode);
+        boolean redGo = fenCode.contains("w");
+        long[] zobrists = new long[moveList.size() + 1];
+        long[] mirrorZobrists = new long[moveList.size() + 1];
+        zobrists[0] = pos.getZobrist(redGo);
+        mirrorZobrists[0] = pos.getMirrorZobrist(redGo);
+        for (int i = 0; i < moveList.size(); i++) {
+            int move = MoveGenerator.fromUci(moveList.get(i));
+            if (!MoveGenerator.isLegal(pos, redGo, move)) {
+                return new long[][]{Arrays.copyOf(zobrists, i + 1), Arrays.copyOf(mirrorZobrists, i + 1)};
+            }
+            pos.makeMove(MoveGenerator.from(move), MoveGenerator.to(move));
+            redGo = !redGo;
+            zobrists[i + 1] = pos.getZobrist(redGo);
+            mirrorZobrists[i + 1] = pos.getMirrorZobrist(redGo);
+        }
+        return new long[][]{zobrists, mirrorZobrists};
+    }
+
     public static long getZobristFromBoard(char[][] board, boolean redGo, boolean leftRightSwap) {
         long zobrist = 0;
         for (int y = 0; y < 10; y++) {
             for (int x = 0; x < 9; x++) {
                 char letter = board[y][x];
                 if (letter != ' ') {
-                    int chess = pieces.get(letter);
-                    int index = (leftRightSwap ? (8 - x) : x) + y * 9;
-                    int square = c90[index];
-                    zobrist ^= zobristTable[chess * 256 + square];
+                    zobrist ^= getPieceKey(letter, y * 9 + (leftRightSwap ? (8 - x) : x));
                 }
             }
         }
@@ -33,6 +63,35 @@ public class ZobristUtils {
         return zobrist;
     }
 
+    /**
+     * 单个棋子在某格(y * 9 + x)上的键值，用于增量更新
+     */
+    public static long getPieceKey(char letter, int index) {
+        int chess = letter < 128 ? pieces[letter] : -1;
+        return chess < 0 ? 0 : pieceSquareKeys[chess * 90 + index];
+    }
+
+    /**
+     * 同 getPieceKey，chess 为棋子序号(K A B N R C P k a b n r c p 依次为 0-13)
+     */
+    public static long getPieceKey(int chess, int index) {
+        return pieceSquareKeys[chess * 90 + index];
+    }
+
+    /**
+     * 左右镜像后的格子
+     */
+    public static int mirrorIndex(int index) {
+        return index - index % 9 + 8 - index % 9;
+    }
+
+    /**
+     * 叠加行棋方
+     */
+    public static long withPlayer(long zobrist, boolean redGo) {
+        return redGo ? zobrist ^ zobristPlayer : zobrist;
+    }
+
 
     private final static int[] c90 = new int[]{
             0x33, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x3b,
@@ -62,25 +121,20 @@ public class ZobristUtils {
 
     };
 
-    private static Map<Character, Integer> pieces;
+    private final static int[] pieces = new int[128];
     private static Map<Integer, String> coordMap;
 
+    /**
+     * 按 chess * 90 + index 展开的键值表
+     */
+    private final static long[] pieceSquareKeys = new long[14 * 90];
+
     static {
-        pieces = new HashMap<>();
-        pieces.put('K', 0);
-        pieces.put('A', 1);
-        pieces.put('B', 2);
-        pieces.put('N', 3);
-        pieces.put('R', 4);
-        pieces.put('C', 5);
-        pieces.put('P', 6);
-        pieces.put('k', 7);
-        pieces.put('a', 8);
-        pieces.put('b', 9);
-        pieces.put('n', 10);
-        pieces.put('r', 11);
-        pieces.put('c', 12);
-        pieces.put('p', 13);
+        Arrays.fill(pieces, -1);
+        String letters = "KABNRCPkabnrcp";
+        for (int i = 0; i < letters.length(); i++) {
+            pieces[letters.charAt(i)] = i;
+        }
 
         coordMap = new HashMap<>();
         for (int i = 0; i < 90; i++) {
@@ -809,4 +863,12 @@ public class ZobristUtils {
             0xEE0CFA3C3CDBCB3AL, 0x2BC3D67C2A9456A6L, 0xCCEC927102BA9F8BL, 0x99D4D26634F2C7EEL, 0x90CD28B0A49941BCL,
             0x4BED3658846DB60DL, 0xA2AABE2DED518020L, 0xEDE9C05C8179F062L, 0x7E3E3C3949ED0D33L
     };
+
+    static {
+        for (int chess = 0; chess < 14; chess++) {
+            for (int index = 0; index < 90; index++) {
+                pieceSquareKeys[chess * 90 + index] = zobristTable[chess * 256 + c90[index]];
+            }
+        }
+    }
 }
@@ -0,0 +1,230 @@
+package com.sojourners.chess.yolo;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.FloatBuffer;
+
+/**
+ * 模型输入预处理
+ * <p>
+ * 直接读取截图的像素数组(整型 RGB/ARGB 或字节 BGR/ABGR，其他格式逐行 getRGB)，
+ * 用定点双线性插值缩放到 SIZE × SIZE 的输入区域，其余部分填充灰色(114)，
+ * 按 NCHW 顺序归一化写入模型的 FloatBuffer。缓冲区全部复用，识别过程中不分配内存。
+ * 一个实例只能在一个线程中使用。
+ */
+class ImagePreprocessor {
+
+    /**
+     * 填充色
+     */
+    static final float PAD = 114 / 255f;
+
+    /**
+     * 插值权重的精度(位)
+     */
+    private static final int SHIFT = 8;
+
+    private static final int ONE = 1 << SHIFT;
+
+    private static final float[] NORMALIZE = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            NORMALIZE[i] = i / 255f;
+        }
+    }
+
+    private final int size;
+
+    /**
+     * 目标列对应的源列及右侧权重
+     */
+    private final int[] x0, x1, wx;
+
+    /**
+     * 一行目标像素取到的上下两行源像素(0xRRGGBB)，每个目标列左右各一个
+     */
+    private final int[] top, bottom;
+
+    private final float[] red, green, blue;
+
+    /**
+     * 其他格式逐行读取用
+     */
+    private int[] scanline = new int[0];
+
+    ImagePreprocessor(int size) {
+        this.size = size;
+        this.x0 = new int[size];
+        this.x1 = new int[size];
+        this.wx = new int[size];
+        this.top = new int[size * 2];
+        this.bottom = new int[size * 2];
+        this.red = new float[size];
+        this.green = new float[size];
+        this.blue = new float[size];
+    }
+
+    /**
+     * 缩放图片写入模型输入
+     *
+     * @param rate   缩放比例
+     * @param center 是否居中(否则靠左上角)
+     * @param dst    容量为 3 × size × size 的输入缓冲区
+     */
+    void process(BufferedImage img, float rate, boolean center, FloatBuffer dst) {
+        int srcW = img.getWidth(), srcH = img.getHeight();
+        int destW = Math.min(Math.max(Math.round(srcW * rate), 1), size);
+        int destH = Math.min(Math.max(Math.round(srcH * rate), 1), size);
+        int left = center ? (size - destW) / 2 : 0;
+        int topMargin = center ? (size - destH) / 2 : 0;
+        int plane = size * size;
+
+        // 源坐标按像素中心对齐: (d + 0.5) × src / dest - 0.5
+        for (int dx = 0; dx < destW; dx++) {
+            int f = Math.max((int) (((dx + 0.5f) * srcW / destW - 0.5f) * ONE), 0);
+            int x = f >> SHIFT;
+            if (x >= srcW - 1) {
+                x0[dx] = x1[dx] = srcW - 1;
+                wx[dx] = 0;
+            } else {
+                x0[dx] = x;
+                x1[dx] = x + 1;
+                wx[dx] = f & (ONE - 1);
+            }
+        }
+
+        // 左右两侧的填充
+        for (int j = 0; j < size; j++) {
+            if (j < left || j >= left + destW) {
+                red[j] = green[j] = blue[j] = PAD;
+            }
+        }
+
+        Reader reader = reader(img);
+        for (int i = 0; i < size; i++) {
+            int dy = i - topMargin;
+            if (dy < 0 || dy >= destH) {
+                fillPadding(dst, i * size, plane);
+                continue;
+            }
+            int f = Math.max((int) (((dy + 0.5f) * srcH / destH - 0.5f) * ONE), 0);
+            int y = f >> SHIFT, wy = f & (ONE - 1);
+            if (y >= srcH - 1) {
+                y = srcH - 1;
+                wy = 0;
+            }
+            reader.read(img, y, destW, top);
+            if (wy > 0) {
+                reader.read(img, y + 1, destW, bottom);
+            }
+            blendRow(destW, left, wy);
+            int offset = i * size;
+            dst.put(offset, red);
+            dst.put(plane + offset, green);
+            dst.put(plane * 2 + offset, blue);
+        }
+    }
+
+    private void fillPadding(FloatBuffer dst, int offset, int plane) {
+        for (int c = 0; c < 3; c++) {
+            for (int j = 0; j < size; j++) {
+                dst.put(c * plane + offset + j, PAD);
+            }
+        }
+    }
+
+    private void blendRow(int destW, int left, int wy) {
+        for (int dx = 0; dx < destW; dx++) {
+            int a = top[dx * 2], b = top[dx * 2 + 1];
+            int w1 = wx[dx], w0 = ONE - w1;
+            int r = ((a >> 16) & 0xff) * w0 + ((b >> 16) & 0xff) * w1;
+            int g = ((a >> 8) & 0xff) * w0 + ((b >> 8) & 0xff) * w1;
+            int bl = (a & 0xff) * w0 + (b & 0xff) * w1;
+            if (wy > 0) {
+                int c = bottom[dx * 2], d = bottom[dx * 2 + 1];
+                int v1 = wy, v0 = ONE - wy;
+                r = r * v0 + (((c >> 16) & 0xff) * w0 + ((d >> 16) & 0xff) * w1) * v1;
+                g = g * v0 + (((c >> 8) & 0xff) * w0 + ((d >> 8) & 0xff) * w1) * v1;
+                bl = bl * v0 + ((c & 0xff) * w0 + (d & 0xff) * w1) * v1;
+            } else {
+                r <<= SHIFT;
+                g <<= SHIFT;
+                bl <<= SHIFT;
+            }
+            int round = 1 << (SHIFT * 2 - 1);
+            red[left + dx] = NORMALIZE[(r + round) >> (SHIFT * 2)];
+            green[left + dx] = NORMALIZE[(g + round) >> (SHIFT * 2)];
+            blue[left + dx] = NORMALIZE[(bl + round) >> (SHIFT * 2)];
+        }
+    }
+
+    /**
+     * 读取一行源像素中各目标列用到的两个点
+     */
+    private interface Reader {
+        void read(BufferedImage img, int y, int destW, int[] out);
+    }
+
+    private Reader reader(BufferedImage img) {
+        WritableRaster raster = img.getRaster();
+        DataBuffer db = raster.getDataBuffer();
+        int tx = raster.getSampleModelTranslateX(), ty = raster.getSampleModelTranslateY();
+
+        if (db instanceof DataBufferInt dbi && db.getNumBanks() == 1
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                && img.getColorModel() instanceof DirectColorModel cm
+                && cm.getRedMask() == 0xff0000 && cm.getGreenMask() == 0xff00 && cm.getBlueMask() == 0xff) {
+            // TYPE_INT_RGB / TYPE_INT_ARGB，截图的常见格式
+            int[] data = dbi.getData();
+            int stride = sm.getScanlineStride(), base = db.getOffset() - ty * stride - tx;
+            return (image, y, destW, out) -> {
+                int row = base + y * stride;
+                for (int dx = 0; dx < destW; dx++) {
+                    out[dx * 2] = data[row + x0[dx]];
+                    out[dx * 2 + 1] = data[row + x1[dx]];
+                }
+            };
+        }
+
+        if (db instanceof DataBufferByte dbb && db.getNumBanks() == 1
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel sm
+                && img.getColorModel() instanceof ComponentColorModel cm
+                && cm.getColorSpace().isCS_sRGB() && sm.getNumBands() >= 3) {
+            // TYPE_3BYTE_BGR / TYPE_4BYTE_ABGR
+            byte[] data = dbb.getData();
+            int ps = sm.getPixelStride(), stride = sm.getScanlineStride();
+            int[] bands = sm.getBandOffsets();
+            int rOff = bands[0], gOff = bands[1], bOff = bands[2];
+            int base = db.getOffset() - ty * stride - tx * ps;
+            return (image, y, destW, out) -> {
+                int row = base + y * stride;
+                for (int dx = 0; dx < destW; dx++) {
+                    int p = row + x0[dx] * ps;
+                    out[dx * 2] = (data[p + rOff] & 0xff) << 16 | (data[p + gOff] & 0xff) << 8 | (data[p + bOff] & 0xff);
+                    p = row + x1[dx] * ps;
+                    out[dx * 2 + 1] = (data[p + rOff] & 0xff) << 16 | (data[p + gOff] & 0xff) << 8 | (data[p + bOff] & 0xff);
+                }
+            };
+        }
+
+        // 其他格式经颜色模型转换
+        if (scanline.length < img.getWidth()) {
+            scanline = new int[img.getWidth()];
+        }
+        return (image, y, destW, out) -> {
+            image.getRGB(0, y, image.getWidth(), 1, scanline, 0, image.getWidth());
+            for (int dx = 0; dx < destW; dx++) {
+                out[dx * 2] = scanline[x0[dx]];
+                out[dx * 2 + 1] = scanline[x1[dx]];
+            }
+        };
+    }
+}
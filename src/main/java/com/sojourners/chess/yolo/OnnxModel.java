@@ -1,12 +1,27 @@
 package com.sojourners.chess.yolo;
 
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
 import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
 import com.sojourners.chess.config.Properties;
 import com.sojourners.chess.util.PathUtils;
 
 import java.awt.image.BufferedImage;
-
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Map;
+
+/**
+ * ONNX 识别模型
+ * <p>
+ * 输入/输出张量、预处理缓冲区和计时数据每帧复用，不是线程安全的：子类的识别入口必须串行执行
+ * (见 Yolo5Model.predict)，run、recordTimings 等方法只能在持有该锁时调用。
+ */
 public abstract class OnnxModel {
 
     public static final double PADDING = 0.8d;
@@ -17,10 +32,48 @@ public abstract class OnnxModel {
 
     public static final char[] labels = {'n', 'b', 'a', 'k', 'r', 'c', 'p', 'R', 'N', 'A', 'K', 'B', 'C', 'P', '0'};
 
+    /**
+     * 模型输入(NCHW)，每次识别复用
+     */
+    final FloatBuffer input = ByteBuffer.allocateDirect(3 * SIZE * SIZE * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+    final ImagePreprocessor preprocessor = new ImagePreprocessor(SIZE);
+
+    /**
+     * 识别各阶段：预处理、推理、解码、NMS
+     */
+    static final int PREPROCESS = 0, RUN = 1, DECODE = 2, NMS = 3;
+
+    private static final String[] STAGE_NAMES = {"预处理", "推理", "解码", "NMS"};
+
+    /**
+     * 每多少帧输出一次平均耗时
+     */
+    private static final int TIMING_FRAMES = 100;
+
     OrtSession session;
 
     OrtEnvironment env;
 
+    /**
+     * 以 input 为存储的输入张量，创建一次，之后每帧只改写 input 的内容
+     */
+    private Map<String, OnnxTensor> inputs;
+
+    /**
+     * 预先分配的输出张量，推理结果直接写入 output；输出形状不固定时为 null
+     */
+    private Map<String, OnnxValue> pinnedOutputs;
+
+    private FloatBuffer output;
+
+    /**
+     * 累计的各阶段耗时(纳秒)
+     */
+    private final long[] stageTotal = new long[4];
+
+    private int frames;
+
     public OnnxModel() {
         try {
             env = OrtEnvironment.getEnvironment();
@@ -32,11 +85,67 @@ public abstract class OnnxModel {
 
             session = env.createSession(path, opt);
 
+            bindTensors();
+
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    private void bindTensors() throws OrtException {
+        String inputName = session.getInputNames().iterator().next();
+        inputs = Map.of(inputName, OnnxTensor.createTensor(env, input, new long[]{1, 3, SIZE, SIZE}));
+
+        Map.Entry<String, NodeInfo> out = session.getOutputInfo().entrySet().iterator().next();
+        long[] shape = ((TensorInfo) out.getValue().getInfo()).getShape();
+        long count = 1;
+        for (long d : shape) {
+            if (d <= 0) {
+                // 动态形状，只能由 onnxruntime 分配输出
+                return;
+            }
+            count *= d;
+        }
+        output = ByteBuffer.allocateDirect((int) count * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        pinnedOutputs = Map.of(out.getKey(), OnnxTensor.createTensor(env, output, shape));
+    }
+
+    /**
+     * 用 input 中已写好的数据推理
+     *
+     * @return 模型输出，下次推理时会被覆盖
+     */
+    FloatBuffer run() throws OrtException {
+        if (pinnedOutputs != null) {
+            // 结果写入预先分配的输出张量，Result 不持有它，关闭时不会释放
+            session.run(inputs, pinnedOutputs).close();
+            return output;
+        }
+        try (OrtSession.Result results = session.run(inputs)) {
+            return ((OnnxTensor) results.get(0)).getFloatBuffer();
+        }
+    }
+
+    /**
+     * 记录一帧各阶段的耗时，每 TIMING_FRAMES 帧输出一次平均值
+     *
+     * @param t 各阶段开始及结束时刻(纳秒)，长度为阶段数 + 1
+     */
+    void recordTimings(long[] t) {
+        for (int i = 0; i < stageTotal.length; i++) {
+            stageTotal[i] += t[i + 1] - t[i];
+        }
+        if (++frames == TIMING_FRAMES) {
+            StringBuilder sb = new StringBuilder("识别耗时(").append(frames).append(" 帧平均)");
+            for (int i = 0; i < stageTotal.length; i++) {
+                sb.append(' ').append(STAGE_NAMES[i]).append(String.format(" %.2fms", stageTotal[i] / 1e6 / frames));
+                stageTotal[i] = 0;
+            }
+            System.out.println(sb);
+            frames = 0;
+        }
+    }
+
     public abstract String getModelPath();
 
     public abstract java.awt.Rectangle findBoardPosition(BufferedImage img);
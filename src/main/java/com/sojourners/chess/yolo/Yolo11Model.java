@@ -1,7 +1,7 @@
 package com.sojourners.chess.yolo;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,45 +14,16 @@ public class Yolo11Model extends Yolo5Model {
         return "model/yolov11.onnx";
     }
 
-    float[][][] processInput(BufferedImage image, float rate) {
-
-        int destW = Math.round(image.getWidth() * rate);
-        int destH = Math.round(image.getHeight() * rate);
-        BufferedImage resizedImage = new BufferedImage(destW, destH, image.getType());
-        Graphics2D g2d = resizedImage.createGraphics();
-        // 改进的绘制参数设置
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR); // 或者 VALUE_INTERPOLATION_BICUBIC
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.drawImage(image, 0, 0, destW, destH, null);
-//        g2d.drawImage(image.getScaledInstance(destW, destH, Image.SCALE_SMOOTH), 0, 0, null);
-        g2d.dispose();
-
-        int resizedWidth = resizedImage.getWidth();
-        int resizedHeight = resizedImage.getHeight();
-        int leftMargin = (SIZE - resizedWidth) / 2, topMargin = (SIZE - resizedHeight) / 2;
-
-        float[][][] arr = new float[3][SIZE][SIZE];
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (i >= topMargin && j >= leftMargin && i < topMargin + resizedHeight
-                        && j < leftMargin + resizedWidth) {
-                    int rgb = resizedImage.getRGB(j - leftMargin, i - topMargin);
-                    Color color = new Color(rgb, true);
-                    arr[0][i][j] = color.getRed() / 255.0f;
-                    arr[1][i][j] = color.getGreen() / 255.0f;
-                    arr[2][i][j] = color.getBlue() / 255.0f;
-                } else {
-                    arr[0][i][j] = 114.0f / 255;
-                    arr[1][i][j] = 114.0f / 255;
-                    arr[2][i][j] = 114.0f / 255;
-                }
-            }
-        }
-        return arr;
+    /**
+     * 图片缩放后居中放置，写入模型输入
+     */
+    @Override
+    void processInput(BufferedImage image, float rate) {
+        preprocessor.process(image, rate, true, input);
     }
 
-    List<DetectResult> processOutput(float[] output, BufferedImage img, float rate) {
+    @Override
+    List<DetectResult> processOutput(FloatBuffer output, BufferedImage img, float rate) {
         List<DetectResult> list = new ArrayList<>();
 
         float xPadding = (SIZE - img.getWidth() * rate) / 2;
@@ -60,7 +31,7 @@ public class Yolo11Model extends Yolo5Model {
 
         int sizeClasses = labels.length;
         int stride = 4 + sizeClasses;
-        int size = output.length / stride;
+        int size = output.capacity() / stride;
 
         for (int i = 0; i < size; ++i) {
             int indexBase = i * stride;
@@ -68,24 +39,24 @@ public class Yolo11Model extends Yolo5Model {
             int maxIndex = 0;
 
             for (int c = 0; c < sizeClasses; ++c) {
-                if (output[reshape(indexBase + c + 4, stride, size)] > maxClass) {
-                    maxClass = output[reshape(indexBase + c + 4, stride, size)];
+                if (output.get(reshape(indexBase + c + 4, stride, size)) > maxClass) {
+                    maxClass = output.get(reshape(indexBase + c + 4, stride, size));
                     maxIndex = c;
                 }
             }
 
             float score = maxClass;
             if (score > CONFIDENCE) {
-                float xPos = output[reshape(indexBase, stride, size)];
-                float yPos = output[reshape(indexBase + 1, stride, size)];
-                float w = output[reshape(indexBase + 2, stride, size)];
-                float h = output[reshape(indexBase + 3, stride, size)];
+                float xPos = output.get(reshape(indexBase, stride, size));
+                float yPos = output.get(reshape(indexBase + 1, stride, size));
+                float w = output.get(reshape(indexBase + 2, stride, size));
+                float h = output.get(reshape(indexBase + 3, stride, size));
                 Rectangle rect = new Rectangle((xPos - xPadding) / rate, (yPos - yPadding) / rate, w / rate, h / rate);
                 list.add(new DetectResult(labels[maxIndex], rect, score));
             }
         }
 
-        return nms(list);
+        return list;
     }
 
     private int reshape(int i, int stride, int size) {
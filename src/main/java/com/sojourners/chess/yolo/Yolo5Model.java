@@ -1,18 +1,20 @@
 package com.sojourners.chess.yolo;
 
 
-import ai.onnxruntime.OnnxTensor;
-import ai.onnxruntime.OnnxValue;
 import ai.onnxruntime.OrtException;
-import ai.onnxruntime.OrtSession;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.nio.FloatBuffer;
 import java.util.*;
 import java.util.List;
 
 public class Yolo5Model extends OnnxModel {
 
+    /**
+     * 本帧各阶段的时刻
+     */
+    private final long[] timings = new long[NMS + 2];
+
     @Override
     public String getModelPath() {
         return "model/middle.onnx";
@@ -137,70 +139,30 @@ public class Yolo5Model extends OnnxModel {
         }
     }
 
-    private List<DetectResult> predict(BufferedImage image) throws OrtException {
-
-        List<DetectResult> list = null;
-
+    /**
+     * 复用输入、输出张量和计时数组，同一时刻只允许一次识别(连线识别线程与界面导入图片可能同时调用)
+     */
+    private synchronized List<DetectResult> predict(BufferedImage image) throws OrtException {
         float rate = ((float) SIZE) / Math.max(image.getWidth(), image.getHeight());
-        long s = System.currentTimeMillis();
-        float[][][] inputData = processInput(image, rate);
-        try (OnnxTensor inputTensor = OnnxTensor.createTensor(env, new float[][][][]{inputData})) {
-
-            Map<String, OnnxTensor> container = new HashMap<>();
-            container.put("images", inputTensor);
-            try (OrtSession.Result results = session.run(container)) {
-
-                for (Map.Entry<String, OnnxValue> r : results) {
-
-                    OnnxValue resultValue = r.getValue();
-                    OnnxTensor resultTensor = (OnnxTensor) resultValue;
-                    float[] output = resultTensor.getFloatBuffer().array();
-
-                    list = processOutput(output, image, rate);
-                }
-            }
-        }
-
-//        System.gc();
-        System.out.println(System.currentTimeMillis() - s);
+        long[] t = timings;
+        t[PREPROCESS] = System.nanoTime();
+        processInput(image, rate);
+        t[RUN] = System.nanoTime();
+        FloatBuffer output = run();
+        t[DECODE] = System.nanoTime();
+        List<DetectResult> list = processOutput(output, image, rate);
+        t[NMS] = System.nanoTime();
+        list = nms(list);
+        t[NMS + 1] = System.nanoTime();
+        recordTimings(t);
         return list;
     }
 
-    float[][][] processInput(BufferedImage image, float rate) {
-
-        int destW = Math.round(image.getWidth() * rate);
-        int destH = Math.round(image.getHeight() * rate);
-        BufferedImage resizedImage = new BufferedImage(destW, destH, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = resizedImage.createGraphics();
-        // 改进的绘制参数设置
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR); // 或者 VALUE_INTERPOLATION_BICUBIC
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.drawImage(image, 0, 0, destW, destH, null);
-        g2d.dispose();
-
-        int resizedWidth = resizedImage.getWidth();
-        int resizedHeight = resizedImage.getHeight();
-        int leftMargin = 0, topMargin = 0;
-
-        float[][][] arr = new float[3][SIZE][SIZE];
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (i >= topMargin && j >= leftMargin && i < topMargin + resizedHeight
-                        && j < leftMargin + resizedWidth) {
-                    int rgb = resizedImage.getRGB(j - leftMargin, i - topMargin);
-                    Color color = new Color(rgb, true);
-                    arr[0][i][j] = color.getRed() / 255.0f;
-                    arr[1][i][j] = color.getGreen() / 255.0f;
-                    arr[2][i][j] = color.getBlue() / 255.0f;
-                } else {
-                    arr[0][i][j] = 114.0f / 255;
-                    arr[1][i][j] = 114.0f / 255;
-                    arr[2][i][j] = 114.0f / 255;
-                }
-            }
-        }
-        return arr;
+    /**
+     * 图片缩放后靠左上角放置，写入模型输入
+     */
+    void processInput(BufferedImage image, float rate) {
+        preprocessor.process(image, rate, false, input);
     }
 
     List<DetectResult> nms(List<DetectResult> list) {
@@ -266,12 +228,15 @@ public class Yolo5Model extends OnnxModel {
         return right - left;
     }
 
-    List<DetectResult> processOutput(float[] output, BufferedImage img, float rate) {
+    /**
+     * 解码模型输出，返回 NMS 之前的候选框
+     */
+    List<DetectResult> processOutput(FloatBuffer output, BufferedImage img, float rate) {
         List<DetectResult> list = new ArrayList<>();
 
         int sizeClasses = labels.length;
         int stride = 5 + sizeClasses;
-        int size = output.length / stride;
+        int size = output.capacity() / stride;
 
         for (int i = 0; i < size; ++i) {
             int indexBase = i * stride;
@@ -279,24 +244,24 @@ public class Yolo5Model extends OnnxModel {
             int maxIndex = 0;
 
             for (int c = 0; c < sizeClasses; ++c) {
-                if (output[indexBase + c + 5] > maxClass) {
-                    maxClass = output[indexBase + c + 5];
+                if (output.get(indexBase + c + 5) > maxClass) {
+                    maxClass = output.get(indexBase + c + 5);
                     maxIndex = c;
                 }
             }
 
-            float score = maxClass * output[indexBase + 4];
+            float score = maxClass * output.get(indexBase + 4);
             if (score > CONFIDENCE) {
-                float xPos = output[indexBase];
-                float yPos = output[indexBase + 1];
-                float w = output[indexBase + 2];
-                float h = output[indexBase + 3];
+                float xPos = output.get(indexBase);
+                float yPos = output.get(indexBase + 1);
+                float w = output.get(indexBase + 2);
+                float h = output.get(indexBase + 3);
                 Rectangle rect = new Rectangle(xPos / rate, yPos / rate, w / rate, h / rate);
                 list.add(new DetectResult(labels[maxIndex], rect, score));
             }
         }
 
-        return nms(list);
+        return list;
     }
 
     class DetectResult {
@@ -0,0 +1,638 @@
+package com.sojourners.chess.board;
+
+import com.sojourners.chess.util.XiangqiUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 绝杀检测 {@link Position#isMated} 与原 char[][] 实现的对照与测速
+ * <p>
+ * 样本为从若干开局/残局随机对弈(偏向将军着法，以便出现绝杀)得到的局面。先用只依赖
+ * {@link XiangqiUtils#canGo} 走法规则的穷举实现核对 {@link Position#isMated} 的结果，
+ * 再分别统计原 char[][] 实现与 Position 实现的耗时。mvn test-compile 后运行：
+ * <pre>
+ * java -cp target/classes:target/test-classes com.sojourners.chess.board.IsShaBenchmark [对局数] [轮数]
+ * </pre>
+ */
+public class IsShaBenchmark {
+
+    private static final String[] STARTS = {
+            "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w - - 0 1",
+            "r1ba1a3/4kn3/2n1b4/pNp1p1p1p/4c4/6P2/P1P2R2P/1CcC5/9/2BAKAB2 w - - 0 1",
+            "1cbak4/9/n2a5/2p1p3p/5cp2/2n2N3/6PCP/3AB4/2C6/3A1K1N1 w - - 0 1",
+            "5a3/3k5/3aR4/9/5r3/5n3/9/3A1A3/5K3/2BC2B2 w - - 0 1",
+            "CRN1k1b2/3ca4/4ba3/9/2nr5/9/9/4B4/4A4/4KA3 w - - 0 1",
+            "R1N1k1b2/9/3aba3/9/2nr5/2B6/9/4B4/4A4/4KA3 w - - 0 1"
+    };
+
+    private static final int MAX_PLIES = 150;
+
+    /**
+     * 样本局面
+     */
+    private record Sample(char[][] board, Position position, boolean red) {
+    }
+
+    private static List<Sample> samples(int games, long seed) {
+        List<Sample> list = new ArrayList<>();
+        Random random = new Random(seed);
+        int[] moves = new int[MoveGenerator.MAX_MOVES], checks = new int[MoveGenerator.MAX_MOVES];
+        for (int g = 0; g < games; g++) {
+            String fenCode = STARTS[g % STARTS.length];
+            Position position = new Position();
+            position.loadFen(fenCode);
+            boolean red = fenCode.contains(" w");
+            for (int ply = 0; ply < MAX_PLIES; ply++) {
+                char[][] board = new char[10][9];
+                position.copyTo(board);
+                Position copy = new Position();
+                copy.copyFrom(position);
+                list.add(new Sample(board, copy, red));
+
+                int n = MoveGenerator.generateLegal(position, red, moves, 0);
+                if (n == 0) {
+                    break;
+                }
+                int c = 0;
+                for (int i = 0; i < n; i++) {
+                    if (MoveGenerator.givesCheck(position, moves[i])) {
+                        checks[c++] = moves[i];
+                    }
+                }
+                int move = c > 0 && random.nextInt(3) > 0 ? checks[random.nextInt(c)] : moves[random.nextInt(n)];
+                position.makeMove(MoveGenerator.from(move), MoveGenerator.to(move));
+                red = !red;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 穷举实现：尝试本方每个棋子到每一格的走法，走后只要没有对方棋子能吃到将帅、两将不对脸，就不是绝杀
+     */
+    private static boolean bruteForceIsSha(char[][] board, boolean isRed) {
+        for (int x1 = 0; x1 < 10; x1++) {
+            for (int y1 = 0; y1 < 9; y1++) {
+                if (board[x1][y1] == ' ' || XiangqiUtils.isRed(board[x1][y1]) != isRed) {
+                    continue;
+                }
+                for (int x2 = 0; x2 < 10; x2++) {
+                    for (int y2 = 0; y2 < 9; y2++) {
+                        if (!XiangqiUtils.canGo(board, x1, y1, x2, y2)) {
+                            continue;
+                        }
+                        char tmp = board[x2][y2];
+                        board[x2][y2] = board[x1][y1];
+                        board[x1][y1] = ' ';
+                        boolean attacked = bruteForceAttacked(board, isRed);
+                        board[x1][y1] = board[x2][y2];
+                        board[x2][y2] = tmp;
+                        if (!attacked) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean bruteForceAttacked(char[][] board, boolean isRed) {
+        char king = isRed ? 'K' : 'k', other = isRed ? 'k' : 'K';
+        int kx = -1, ky = -1, ox = -1, oy = -1;
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 9; y++) {
+                if (board[x][y] == king) {
+                    kx = x;
+                    ky = y;
+                } else if (board[x][y] == other) {
+                    ox = x;
+                    oy = y;
+                }
+            }
+        }
+        if (kx < 0) {
+            return true;
+        }
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 9; y++) {
+                if (board[x][y] != ' ' && XiangqiUtils.isRed(board[x][y]) != isRed && XiangqiUtils.canGo(board, x, y, kx, ky)) {
+                    return true;
+                }
+            }
+        }
+        if (ox >= 0 && oy == ky) {
+            for (int x = Math.min(kx, ox) + 1; x < Math.max(kx, ox); x++) {
+                if (board[x][ky] != ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 原实现(XiangqiUtils.isJiang/isSha)，用于对照
+     */
+    private static boolean legacyIsJiang(char[][] board, boolean isRed) {
+        int bx = 0, by = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 3; j < 6; j++) {
+                if (board[i][j] == 'k') {
+                    bx = j;
+                    by = i;
+                    break;
+                }
+            }
+        }
+        int rx = 0, ry = 0;
+        for (int i = 7; i < 10; i++) {
+            for (int j = 3; j < 6; j++) {
+                if (board[i][j] == 'K') {
+                    rx = j;
+                    ry = i;
+                    break;
+                }
+            }
+        }
+
+        int x = isRed ? rx : bx, y = isRed ? ry : by;
+        if (x == 0 && y == 0) {
+            return false;
+        }
+        boolean searchPao = false;
+        for (int i = x - 1; i >= 0; i--) {
+            if (!searchPao) {
+                if (i == x - 1) {
+                    if (isRed && board[y][i] == 'p' || !isRed && board[y][i] == 'P') {
+                        return true;
+                    }
+                }
+                if (isRed && board[y][i] == 'r' || !isRed && board[y][i] == 'R') {
+                    return true;
+                }
+                if (board[y][i] != ' ') {
+                    searchPao = true;
+                }
+            } else {
+                if (isRed && board[y][i] == 'c' || !isRed && board[y][i] == 'C') {
+                    return true;
+                }
+                if (board[y][i] != ' ') {
+                    break;
+                }
+            }
+        }
+        searchPao = false;
+        for (int i = x + 1; i < 9; i++) {
+            if (!searchPao) {
+                if (i == x + 1) {
+                    if (isRed && board[y][i] == 'p' || !isRed && board[y][i] == 'P') {
+                        return true;
+                    }
+                }
+                if (isRed && board[y][i] == 'r' || !isRed && board[y][i] == 'R') {
+                    return true;
+                }
+                if (board[y][i] != ' ') {
+                    searchPao = true;
+                }
+            } else {
+                if (isRed && board[y][i] == 'c' || !isRed && board[y][i] == 'C') {
+                    return true;
+                }
+                if (board[y][i] != ' ') {
+                    break;
+                }
+            }
+        }
+        searchPao = false;
+        for (int j = y - 1; j >= 0; j--) {
+            if (!searchPao) {
+                if (j == y - 1) {
+                    if (isRed && board[j][x] == 'p') {
+                        return true;
+                    }
+                }
+                if (isRed && board[j][x] == 'r' || !isRed && board[j][x] == 'R') {
+                    return true;
+                }
+                if (board[j][x] != ' ') {
+                    searchPao = true;
+                }
+            } else {
+                if (isRed && board[j][x] == 'c' || !isRed && board[j][x] == 'C') {
+                    return true;
+                }
+                if (board[j][x] != ' ') {
+                    break;
+                }
+            }
+        }
+        searchPao = false;
+        for (int j = y + 1; j < 10; j++) {
+            if (!searchPao) {
+                if (j == y + 1) {
+                    if (!isRed && board[j][x] == 'P') {
+                        return true;
+                    }
+                }
+                if (isRed && board[j][x] == 'r' || !isRed && board[j][x] == 'R') {
+                    return true;
+                }
+                if (board[j][x] != ' ') {
+                    searchPao = true;
+                }
+            } else {
+                if (isRed && board[j][x] == 'c' || !isRed && board[j][x] == 'C') {
+                    return true;
+                }
+                if (board[j][x] != ' ') {
+                    break;
+                }
+            }
+        }
+
+        if ((y - 2 >= 0) && (isRed && (board[y - 2][x + 1] == 'n' && board[y - 1][x + 1] == ' ' || board[y - 2][x - 1] == 'n' && board[y - 1][x - 1] == ' ') || !isRed && (board[y - 2][x + 1] == 'N' && board[y - 1][x + 1] == ' ' || board[y - 2][x - 1] == 'N' && board[y - 1][x - 1] == ' '))) {
+            return true;
+        }
+        if ((y + 2 < 10) && (isRed && (board[y + 2][x + 1] == 'n' && board[y + 1][x + 1] == ' ' || board[y + 2][x - 1] == 'n' && board[y + 1][x - 1] == ' ') || !isRed && (board[y + 2][x + 1] == 'N' && board[y + 1][x + 1] == ' ' || board[y + 2][x - 1] == 'N' && board[y + 1][x - 1] == ' '))) {
+            return true;
+        }
+        if ((y - 1 >= 0 && y + 1 < 10) && (isRed && (board[y - 1][x - 2] == 'n' && board[y - 1][x - 1] == ' ' || y + 1 < 10 && board[y + 1][x - 2] == 'n' && board[y + 1][x - 1] == ' ') || !isRed && (y - 1 >= 0 && board[y - 1][x - 2] == 'N' && board[y - 1][x - 1] == ' ' || board[y + 1][x - 2] == 'N' && board[y + 1][x - 1] == ' '))) {
+            return true;
+        }
+        if ((y - 1 >= 0 && y + 1 < 10) && (isRed && (board[y - 1][x + 2] == 'n' && board[y - 1][x + 1] == ' ' || y + 1 < 10 && board[y + 1][x + 2] == 'n' && board[y + 1][x + 1] == ' ') || !isRed && (y - 1 >= 0 && board[y - 1][x + 2] == 'N' && board[y - 1][x + 1] == ' ' || board[y + 1][x + 2] == 'N' && board[y + 1][x + 1] == ' '))) {
+            return true;
+        }
+
+        if (rx == bx) {
+            boolean f = true;
+            for (int j = by + 1; j < ry; j++) {
+                if (board[j][rx] != ' ') {
+                    f = false;
+                }
+            }
+            if (f) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean legacyIsSha(char[][] board, boolean isRed) {
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board[0].length; j++) {
+                if (!isRed && (board[i][j] >= 'a' && board[i][j] <= 'z') || isRed && (board[i][j] >= 'A' && board[i][j] <= 'Z')) {
+                    if (legacyJieJiang(board, isRed, j, i)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean legacyJieJiang(char[][] board, boolean isRed, int x, int y) {
+        switch (board[y][x]) {
+            case 'k':
+            case 'K': {
+                if (x - 1 >= 3 && (board[y][x - 1] == ' ' || XiangqiUtils.isRed(board[y][x - 1]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x - 1, y)) {
+                        return true;
+                    }
+                }
+                if (x + 1 <= 5 && (board[y][x + 1] == ' ' || XiangqiUtils.isRed(board[y][x + 1]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x + 1, y)) {
+                        return true;
+                    }
+                }
+                if ((isRed && y - 1 >= 7 || !isRed && y - 1 >= 0) && (board[y - 1][x] == ' ' || XiangqiUtils.isRed(board[y - 1][x]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x, y - 1)) {
+                        return true;
+                    }
+                }
+                if ((isRed && y + 1 <= 9 || !isRed && y + 1 <= 2) && (board[y + 1][x] == ' ' || XiangqiUtils.isRed(board[y + 1][x]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x, y + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case 'c':
+            case 'C': {
+                boolean f = false;
+                for (int i = y, j = x - 1; j >= 0; j--) {
+                    if (!f) {
+                        if (board[i][j] == ' ') {
+                            if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                return true;
+                            }
+                        } else {
+                            f = true;
+                            continue;
+                        }
+                    } else {
+                        if (board[i][j] != ' ') {
+                            if (XiangqiUtils.isRed(board[i][j]) != isRed) {
+                                if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                    return true;
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+                f = false;
+                for (int i = y, j = x + 1; j < 9; j++) {
+                    if (!f) {
+                        if (board[i][j] == ' ') {
+                            if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                return true;
+                            }
+                        } else {
+                            f = true;
+                            continue;
+                        }
+                    } else {
+                        if (board[i][j] != ' ') {
+                            if (XiangqiUtils.isRed(board[i][j]) != isRed) {
+                                if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                    return true;
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+                f = false;
+                for (int i = y - 1, j = x; i >= 0; i--) {
+                    if (!f) {
+                        if (board[i][j] == ' ') {
+                            if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                return true;
+                            }
+                        } else {
+                            f = true;
+                            continue;
+                        }
+                    } else {
+                        if (board[i][j] != ' ') {
+                            if (XiangqiUtils.isRed(board[i][j]) != isRed) {
+                                if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                    return true;
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+                f = false;
+                for (int i = y + 1, j = x; i < 10; i++) {
+                    if (!f) {
+                        if (board[i][j] == ' ') {
+                            if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                return true;
+                            }
+                        } else {
+                            f = true;
+                            continue;
+                        }
+                    } else {
+                        if (board[i][j] != ' ') {
+                            if (XiangqiUtils.isRed(board[i][j]) != isRed) {
+                                if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                                    return true;
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+                return false;
+            }
+            case 'p':
+            case 'P': {
+                if (isRed && y - 1 >= 0 || !isRed && y + 1 <= 9) {
+                    int i = isRed ? y - 1 : y + 1;
+                    if ((board[i][x] == ' ' || XiangqiUtils.isRed(board[i][x]) != isRed) && legacyJieJiang(board, isRed, x, y, x, i)) {
+                        return true;
+                    }
+                }
+                if (isRed && y <= 4 && x - 1 >= 0 || !isRed && y >= 5 && x - 1 >= 0) {
+                    if ((board[y][x - 1] == ' ' || XiangqiUtils.isRed(board[y][x - 1]) != isRed) && legacyJieJiang(board, isRed, x, y, x - 1, y)) {
+                        return true;
+                    }
+                }
+                if (isRed && y <= 4 && x + 1 <= 8 || !isRed && y >= 5 && x + 1 <= 8) {
+                    if ((board[y][x + 1] == ' ' || XiangqiUtils.isRed(board[y][x + 1]) != isRed) && legacyJieJiang(board, isRed, x, y, x + 1, y)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case 'r':
+            case 'R': {
+                for (int i = y, j = x - 1; j >= 0; j--) {
+                    if (board[i][j] == ' ' || XiangqiUtils.isRed(board[i][j]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                            return true;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+                for (int i = y, j = x + 1; j < 9; j++) {
+                    if (board[i][j] == ' ' || XiangqiUtils.isRed(board[i][j]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                            return true;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+                for (int i = y - 1, j = x; i >= 0; i--) {
+                    if (board[i][j] == ' ' || XiangqiUtils.isRed(board[i][j]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                            return true;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+                for (int i = y + 1, j = x; i < 10; i++) {
+                    if (board[i][j] == ' ' || XiangqiUtils.isRed(board[i][j]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, j, i)) {
+                            return true;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+                return false;
+            }
+            case 'n':
+            case 'N': {
+                if (x - 2 >= 0 && board[y][x - 1] == ' ') {
+                    if (y - 1 >= 0 && (board[y - 1][x - 2] == ' ' || XiangqiUtils.isRed(board[y - 1][x - 2]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x - 2, y - 1))
+                            return true;
+                    }
+                    if (y + 1 <= 9 && (board[y + 1][x - 2] == ' ' || XiangqiUtils.isRed(board[y + 1][x - 2]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x - 2, y + 1))
+                            return true;
+                    }
+                }
+                if (x + 2 <= 8 && board[y][x + 1] == ' ') {
+                    if (y - 1 >= 0 && (board[y - 1][x + 2] == ' ' || XiangqiUtils.isRed(board[y - 1][x + 2]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x + 2, y - 1))
+                            return true;
+                    }
+                    if (y + 1 <= 9 && (board[y + 1][x + 2] == ' ' || XiangqiUtils.isRed(board[y + 1][x + 2]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x + 2, y + 1))
+                            return true;
+                    }
+                }
+                if (y - 2 >= 0 && board[y - 1][x] == ' ') {
+                    if (x - 1 >= 0 && (board[y - 2][x - 1] == ' ' || XiangqiUtils.isRed(board[y - 2][x - 1]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x - 1, y - 2))
+                            return true;
+                    }
+                    if (x + 1 <= 8 && (board[y - 2][x + 1] == ' ' || XiangqiUtils.isRed(board[y - 2][x + 1]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x + 1, y - 2))
+                            return true;
+                    }
+                }
+                if (y + 2 <= 9 && board[y + 1][x] == ' ') {
+                    if (x - 1 >= 0 && (board[y + 2][x - 1] == ' ' || XiangqiUtils.isRed(board[y + 2][x - 1]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x - 1, y + 2))
+                            return true;
+                    }
+                    if (x + 1 <= 8 && (board[y + 2][x + 1] == ' ' || XiangqiUtils.isRed(board[y + 2][x + 1]) != isRed)) {
+                        if (legacyJieJiang(board, isRed, x, y, x + 1, y + 2))
+                            return true;
+                    }
+                }
+                return false;
+            }
+            case 'b':
+            case 'B': {
+                if (x - 2 >= 0 && y - 2 >= 0 && board[y - 1][x - 1] == ' ' && (isRed && y - 2 >= 5 || !isRed)) {
+                    if (board[y - 2][x - 2] == ' ' || XiangqiUtils.isRed(board[y - 2][x - 2]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, x - 2, y - 2))
+                            return true;
+                    }
+                }
+                if (x - 2 >= 0 && y + 2 <= 9 && board[y + 1][x - 1] == ' ' && (!isRed && y + 2 <= 4 || isRed)) {
+                    if (board[y + 2][x - 2] == ' ' || XiangqiUtils.isRed(board[y + 2][x - 2]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, x - 2, y + 2))
+                            return true;
+                    }
+                }
+                if (x + 2 <= 8 && y - 2 >= 0 && board[y - 1][x + 1] == ' ' && (isRed && y - 2 >= 5 || !isRed)) {
+                    if (board[y - 2][x + 2] == ' ' || XiangqiUtils.isRed(board[y - 2][x + 2]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, x + 2, y - 2))
+                            return true;
+                    }
+                }
+                if (x + 2 <= 8 && y + 2 <= 9 && board[y + 1][x + 1] == ' ' && (!isRed && y + 2 <= 4 || isRed)) {
+                    if (board[y + 2][x + 2] == ' ' || XiangqiUtils.isRed(board[y + 2][x + 2]) != isRed) {
+                        if (legacyJieJiang(board, isRed, x, y, x + 2, y + 2))
+                            return true;
+                    }
+                }
+                return false;
+            }
+            case 'a':
+            case 'A': {
+                if (x - 1 >= 3 && y - 1 >= (isRed ? 7 : 0) && (board[y - 1][x - 1] == ' ' || XiangqiUtils.isRed(board[y - 1][x - 1]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x - 1, y - 1))
+                        return true;
+                }
+                if (x - 1 >= 3 && y + 1 <= (isRed ? 9 : 2) && (board[y + 1][x - 1] == ' ' || XiangqiUtils.isRed(board[y + 1][x - 1]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x - 1, y + 1))
+                        return true;
+                }
+                if (x + 1 <= 5 && y - 1 >= (isRed ? 7 : 0) && (board[y - 1][x + 1] == ' ' || XiangqiUtils.isRed(board[y - 1][x + 1]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x + 1, y - 1))
+                        return true;
+                }
+                if (x + 1 <= 5 && y + 1 <= (isRed ? 9 : 2) && (board[y + 1][x + 1] == ' ' || XiangqiUtils.isRed(board[y + 1][x + 1]) != isRed)) {
+                    if (legacyJieJiang(board, isRed, x, y, x + 1, y + 1))
+                        return true;
+                }
+                return false;
+            }
+
+            default:
+                return false;
+        }
+    }
+
+    private static boolean legacyJieJiang(char[][] board, boolean isRed, int x1, int y1, int x2, int y2) {
+        char tmp = board[y2][x2];
+        board[y2][x2] = board[y1][x1];
+        board[y1][x1] = ' ';
+        boolean result = legacyIsJiang(board, isRed);
+        board[y1][x1] = board[y2][x2];
+        board[y2][x2] = tmp;
+        return !result;
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        List<Sample> list = samples(games, 7);
+
+        int mates = 0, wrong = 0, legacyWrong = 0;
+        for (Sample s : list) {
+            boolean expected = bruteForceIsSha(s.board, s.red);
+            if (expected) {
+                mates++;
+            }
+            if (s.position.isMated(s.red) != expected) {
+                wrong++;
+            }
+            if (legacyIsSha(s.board, s.red) != expected) {
+                legacyWrong++;
+            }
+        }
+        boolean pass = wrong == 0;
+        System.out.printf("%d 个局面，其中绝杀 %d 个%n", list.size(), mates);
+        System.out.printf("Position 与穷举不一致 %d 个，原实现与穷举不一致 %d 个%n", wrong, legacyWrong);
+        System.out.println(pass ? "isSha check passed" : "isSha check FAILED");
+
+        long sink = 0;
+        for (int pass2 = 0; pass2 < 2; pass2++) {
+            // 第一轮预热
+            long s = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (Sample sample : list) {
+                    sink += sample.position.isMated(sample.red) ? 1 : 0;
+                }
+            }
+            long t1 = System.nanoTime() - s;
+
+            s = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (Sample sample : list) {
+                    sink += legacyIsSha(sample.board, sample.red) ? 1 : 0;
+                }
+            }
+            long t2 = System.nanoTime() - s;
+            if (pass2 == 1) {
+                long n = (long) rounds * list.size();
+                System.out.printf("Position.isMated:  %.2f us/局面%n原 char[][] 实现:  %.2f us/局面%n",
+                        t1 / 1e3 / n, t2 / 1e3 / n);
+            }
+        }
+        System.out.println("(" + sink + ")");
+        if (!pass) {
+            System.exit(1);
+        }
+    }
+}
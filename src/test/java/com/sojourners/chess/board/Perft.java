@@ -0,0 +1,92 @@
+package com.sojourners.chess.board;
+
+/**
+ * 着法生成的 perft 校验与测速
+ * <p>
+ * 统计指定深度下的叶子节点数，与公认结果对比即可验证着法生成是否正确，
+ * 同时输出 nodes/s 作为性能参考。运行方式(mvn test-compile 后)：
+ * <pre>
+ * java -cp target/classes:target/test-classes com.sojourners.chess.board.Perft [最大深度]
+ * </pre>
+ */
+public class Perft {
+
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * 标准测试局面及其 perft(1..n) 结果
+     */
+    private static final Object[][] CASES = {
+            {"rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w - - 0 1",
+                    new long[]{44, 1920, 79666, 3290240, 133312995}},
+            {"r1ba1a3/4kn3/2n1b4/pNp1p1p1p/4c4/6P2/P1P2R2P/1CcC5/9/2BAKAB2 w - - 0 1",
+                    new long[]{38, 1128, 43929, 1339047}},
+            {"1cbak4/9/n2a5/2p1p3p/5cp2/2n2N3/6PCP/3AB4/2C6/3A1K1N1 w - - 0 1",
+                    new long[]{7, 281, 8620, 326201}},
+            {"5a3/3k5/3aR4/9/5r3/5n3/9/3A1A3/5K3/2BC2B2 w - - 0 1",
+                    new long[]{25, 424, 9850, 202884}},
+            {"CRN1k1b2/3ca4/4ba3/9/2nr5/9/9/4B4/4A4/4KA3 w - - 0 1",
+                    new long[]{28, 516, 14808, 395483}},
+            {"R1N1k1b2/9/3aba3/9/2nr5/2B6/9/4B4/4A4/4KA3 w - - 0 1",
+                    new long[]{21, 364, 7626, 162837}}
+    };
+
+    private final Position position = new Position();
+
+    private final int[][] buffers = new int[MAX_DEPTH][MoveGenerator.MAX_MOVES];
+
+    public Perft(String fenCode) {
+        position.loadFen(fenCode);
+    }
+
+    public Perft(Position position) {
+        this.position.copyFrom(position);
+    }
+
+    public long perft(boolean red, int depth) {
+        return perft(red, depth, 0);
+    }
+
+    private long perft(boolean red, int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] moves = buffers[ply];
+        int n = MoveGenerator.generatePseudoLegal(position, red, moves, 0);
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            int from = MoveGenerator.from(moves[i]), to = MoveGenerator.to(moves[i]);
+            int captured = position.makeMove(from, to);
+            if (!position.isChecked(red)) {
+                nodes += depth == 1 ? 1 : perft(!red, depth - 1, ply + 1);
+            }
+            position.unmakeMove(from, to, captured);
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        boolean pass = true;
+        for (Object[] c : CASES) {
+            String fenCode = (String) c[0];
+            long[] expected = (long[]) c[1];
+            boolean red = fenCode.contains(" w");
+            Perft perft = new Perft(fenCode);
+            System.out.println(fenCode);
+            for (int d = 1; d <= Math.min(maxDepth, expected.length); d++) {
+                long s = System.nanoTime();
+                long nodes = perft.perft(red, d);
+                long t = System.nanoTime() - s;
+                boolean ok = nodes == expected[d - 1];
+                pass &= ok;
+                System.out.printf("  depth %d: %d %s  %.0f ms  %.0f knps%n",
+                        d, nodes, ok ? "ok" : "expected " + expected[d - 1], t / 1e6, nodes / (t / 1e6));
+            }
+        }
+        System.out.println(pass ? "perft passed" : "perft FAILED");
+        if (!pass) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.sojourners.chess.enginee;
+
+import com.sojourners.chess.board.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link InfoParser} 与原 split 解析方式的结果校验与测速
+ * <p>
+ * 样本为 Pikafish(UCI) 与 UCCI 引擎的典型输出。运行方式(mvn test-compile 后)：
+ * <pre>
+ * java -cp target/classes:target/test-classes com.sojourners.chess.enginee.InfoParserBenchmark [轮数]
+ * </pre>
+ */
+public class InfoParserBenchmark {
+
+    private static final String[] LINES = {
+            "info string NNUE evaluation using pikafish.nnue",
+            "info depth 1 seldepth 1 multipv 1 score cp 18 nodes 46 nps 46000 hashfull 0 tbhits 0 time 1 pv h2e2",
+            "info depth 12 seldepth 16 multipv 1 score cp 27 nodes 112834 nps 1253711 hashfull 31 tbhits 0 time 90 pv h2e2 h9g7 h0g2 i9h9 i0h0 b9c7 b0c2 a9b9 a0b0 c6c5",
+            "info depth 18 seldepth 24 multipv 1 score cp 31 lowerbound nodes 2043918 nps 1512525 hashfull 402 tbhits 0 time 1351 pv h2e2",
+            "info depth 22 currmove b2e2 currmovenumber 3",
+            "info depth 25 seldepth 33 multipv 1 score cp -12 nodes 18230418 nps 1630211 hashfull 913 tbhits 0 time 11183 pv b0c2 h9g7 h0g2 i9h9 i0h0 b9c7 a0a1 a9b9 a1f1 g6g5 c3c4 h7i7 f1f6 c9e7 b2a2 b7a7",
+            "info depth 30 seldepth 19 multipv 1 score mate 7 nodes 982341 nps 1430211 hashfull 122 tbhits 0 time 687 pv h7h0 e9e8 h0h8 e8e9 c4c8 d9d8 c8d8",
+            "info depth 30 seldepth 19 multipv 1 score mate -4 nodes 982341 nps 1430211 hashfull 122 tbhits 0 time 687 pv e9d9 h7h9 d9d8 c4c8",
+            "info depth 14 score 35 pv h2e2 h9g7 h0g2 i9h9",
+            "info time 532 nodes 7651022 nps 14381620",
+            "bestmove h2e2 ponder h9g7",
+            "bestmove b0c2"
+    };
+
+    /**
+     * 原实现(按空格 split，数值装箱)，用于对照
+     */
+    private static Object[] legacy(String msg) {
+        String[] str = msg.split(" ");
+        Integer depth = null, score = null, mate = null;
+        Long nps = null, time = null;
+        List<String> detail = new ArrayList<>();
+        int flag = 0;
+        for (int i = 0; i < str.length; i++) {
+            if (flag != 0) {
+                if (flag == 6) {
+                    detail.add(str[i]);
+                } else if (str[i].matches("^-?\\d+$")) {
+                    if (flag == 1) {
+                        nps = Long.parseLong(str[i]);
+                    } else if (flag == 2) {
+                        time = Long.parseLong(str[i]);
+                    } else if (flag == 3) {
+                        depth = Integer.parseInt(str[i]);
+                    } else if (flag == 4) {
+                        mate = Integer.parseInt(str[i]);
+                    } else if (flag == 5) {
+                        score = Integer.parseInt(str[i]);
+                    }
+                    flag = 0;
+                }
+            } else {
+                if ("depth".equals(str[i])) {
+                    flag = 3;
+                } else if ("score".equals(str[i])) {
+                    flag = i + 1 < str.length && "mate".equals(str[i + 1]) ? 4 : 5;
+                } else if ("mate".equals(str[i])) {
+                    flag = 4;
+                } else if ("nps".equals(str[i])) {
+                    flag = 1;
+                } else if ("time".equals(str[i])) {
+                    flag = 2;
+                } else if ("pv".equals(str[i])) {
+                    flag = 6;
+                }
+            }
+        }
+        return new Object[]{depth, score, mate, nps, time, detail};
+    }
+
+    private static boolean check() {
+        InfoParser parser = new InfoParser();
+        EngineInfo info = new EngineInfo();
+        boolean pass = true;
+        for (String line : LINES) {
+            int type = parser.parse(line, info);
+            if (!line.contains("nps") || type != InfoParser.INFO || info.pvLength == 0) {
+                continue;
+            }
+            Object[] old = legacy(line);
+            List<String> pv = new ArrayList<>();
+            for (int i = 0; i < info.pvLength; i++) {
+                pv.add(MoveGenerator.toUci(info.pv[i]));
+            }
+            boolean ok = old[0].equals(info.depth) && old[5].equals(pv)
+                    && (info.hasMate ? old[2].equals(info.mate) : old[1].equals(info.score))
+                    && old[3].equals(info.nps) && old[4].equals(info.time);
+            if (!ok) {
+                System.out.println("mismatch: " + line);
+            }
+            pass &= ok;
+        }
+        return pass;
+    }
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        boolean pass = check();
+        System.out.println(pass ? "parser check passed" : "parser check FAILED");
+
+        InfoParser parser = new InfoParser();
+        EngineInfo info = new EngineInfo();
+        long sink = 0;
+        for (int pass2 = 0; pass2 < 2; pass2++) {
+            // 第一轮预热
+            long s = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (String line : LINES) {
+                    sink += parser.parse(line, info) + info.pvLength;
+                }
+            }
+            long t1 = System.nanoTime() - s;
+
+            s = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (String line : LINES) {
+                    sink += ((List<?>) legacy(line)[5]).size();
+                }
+            }
+            long t2 = System.nanoTime() - s;
+            if (pass2 == 1) {
+                long n = (long) rounds * LINES.length;
+                System.out.printf("InfoParser: %.1f ns/line%nsplit:      %.1f ns/line%n", t1 / (double) n, t2 / (double) n);
+            }
+        }
+        System.out.println("(" + sink + ")");
+        if (!pass) {
+            System.exit(1);
+        }
+    }
+}
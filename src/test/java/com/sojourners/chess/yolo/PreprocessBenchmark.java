@@ -0,0 +1,141 @@
+package com.sojourners.chess.yolo;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * {@link ImagePreprocessor} 与原 Graphics2D + getRGB 预处理的结果对照与测速
+ * <p>
+ * 样本为合成的 1920 × 1080 截图(整型 RGB、字节 BGR、子图和 565 几种格式)。运行方式(mvn test-compile 后)：
+ * <pre>
+ * java -cp target/classes:target/test-classes com.sojourners.chess.yolo.PreprocessBenchmark [轮数]
+ * </pre>
+ */
+public class PreprocessBenchmark {
+
+    private static final int SIZE = 640;
+
+    /**
+     * 原实现(Yolo11Model.processInput)，用于对照
+     */
+    private static float[][][] legacy(BufferedImage image, float rate) {
+        int destW = Math.round(image.getWidth() * rate);
+        int destH = Math.round(image.getHeight() * rate);
+        BufferedImage resizedImage = new BufferedImage(destW, destH, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resizedImage.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.drawImage(image, 0, 0, destW, destH, null);
+        g2d.dispose();
+
+        int leftMargin = (SIZE - destW) / 2, topMargin = (SIZE - destH) / 2;
+        float[][][] arr = new float[3][SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (i >= topMargin && j >= leftMargin && i < topMargin + destH && j < leftMargin + destW) {
+                    Color color = new Color(resizedImage.getRGB(j - leftMargin, i - topMargin), true);
+                    arr[0][i][j] = color.getRed() / 255.0f;
+                    arr[1][i][j] = color.getGreen() / 255.0f;
+                    arr[2][i][j] = color.getBlue() / 255.0f;
+                } else {
+                    arr[0][i][j] = arr[1][i][j] = arr[2][i][j] = 114.0f / 255;
+                }
+            }
+        }
+        return arr;
+    }
+
+    private static BufferedImage sample(int type) {
+        BufferedImage img = new BufferedImage(1920, 1080, type);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(200, 160, 90), 1920, 1080, new Color(120, 70, 30)));
+        g.fillRect(0, 0, 1920, 1080);
+        Random random = new Random(7);
+        for (int i = 0; i < 32; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            g.fillOval(random.nextInt(1800), random.nextInt(960), 60 + random.nextInt(60), 60 + random.nextInt(60));
+        }
+        g.dispose();
+        return img;
+    }
+
+    private static FloatBuffer buffer() {
+        return ByteBuffer.allocateDirect(3 * SIZE * SIZE * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private static float rate(BufferedImage img) {
+        return ((float) SIZE) / Math.max(img.getWidth(), img.getHeight());
+    }
+
+    /**
+     * @return 与原实现的平均误差
+     */
+    private static double compare(String name, BufferedImage img, ImagePreprocessor pre, FloatBuffer dst) {
+        float rate = rate(img);
+        float[][][] old = legacy(img, rate);
+        pre.process(img, rate, true, dst);
+        double sum = 0, max = 0;
+        for (int c = 0; c < 3; c++) {
+            for (int i = 0; i < SIZE; i++) {
+                for (int j = 0; j < SIZE; j++) {
+                    double d = Math.abs(old[c][i][j] - dst.get(c * SIZE * SIZE + i * SIZE + j));
+                    sum += d;
+                    max = Math.max(max, d);
+                }
+            }
+        }
+        double mean = sum / (3 * SIZE * SIZE);
+        System.out.printf("%-10s mean %.5f  max %.3f%n", name, mean, max);
+        return mean;
+    }
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        ImagePreprocessor pre = new ImagePreprocessor(SIZE);
+        FloatBuffer dst = buffer();
+
+        BufferedImage rgb = sample(BufferedImage.TYPE_INT_RGB);
+        BufferedImage bgr = sample(BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage rgb565 = sample(BufferedImage.TYPE_USHORT_565_RGB);
+        BufferedImage sub = rgb.getSubimage(300, 100, 1200, 900);
+        BufferedImage same = sample(BufferedImage.TYPE_INT_RGB).getSubimage(0, 0, SIZE, SIZE);
+
+        // 缩放算法不同(取样位置、舍入)，允许平均 1% 以内的差别；不缩放时应完全一致
+        boolean pass = compare("INT_RGB", rgb, pre, dst) < 0.01
+                & compare("3BYTE_BGR", bgr, pre, dst) < 0.01
+                & compare("565_RGB", rgb565, pre, dst) < 0.01
+                & compare("subimage", sub, pre, dst) < 0.01
+                & compare("1:1", same, pre, dst) == 0;
+        System.out.println(pass ? "preprocess check passed" : "preprocess check FAILED");
+
+        float rate = rate(rgb);
+        double sink = 0;
+        for (int pass2 = 0; pass2 < 2; pass2++) {
+            // 第一轮预热
+            long s = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                pre.process(rgb, rate, true, dst);
+                sink += dst.get(r);
+            }
+            long t1 = System.nanoTime() - s;
+
+            s = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                sink += legacy(rgb, rate)[0][0][r];
+            }
+            long t2 = System.nanoTime() - s;
+            if (pass2 == 1) {
+                System.out.printf("ImagePreprocessor: %.2f ms/frame%nGraphics2D:        %.2f ms/frame%n", t1 / 1e6 / rounds, t2 / 1e6 / rounds);
+            }
+        }
+        System.out.println("(" + sink + ")");
+        if (!pass) {
+            System.exit(1);
+        }
+    }
+}